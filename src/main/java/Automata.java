@@ -2,18 +2,31 @@ import java.util.*;
 
 /**
  * Automata class represent a DFA.
- * This version is implemented with a HashMap to store the transition table.
+ * Transitions are declared through a HashMap-based builder (addTransition/addTransitions)
+ * and compiled into a dense DfaTable: states are numbered as ints, input chars are grouped
+ * into equivalence classes and the ANY fallback is folded into every row, so that
+ * nextState is two array reads. minimize() also merges equivalent states (Hopcroft).
  *
  * @author javiergs
- * @version 1.0
+ * @version 1.2
  */
 public class Automata {
 
+    /** Id of the error state; every input leads from it back to itself. */
+    public static final int DEAD = DfaTable.DEAD;
+
+    private static final String ANY = "ANY";
+
     private final HashMap<String, String> table = new HashMap<>();
     private final HashMap<String, String> acceptStates = new HashMap<>();
 
+    // Compiled form, rebuilt by compile() whenever the builder has changed
+    private DfaTable compiled;
+    private HashMap<String, Integer> stateIds;
+
     public void addTransition(String currentState, String inputSymbol, String nextState) {
         table.put(currentState + "/" + inputSymbol, nextState);
+        compiled = null;
     }
 
     /**
@@ -24,7 +37,7 @@ public class Automata {
      * @param targetState The destination state for each transition.
      */
     public void addTransitions(String sourceState, String symbols, String targetState) {
-        if(Objects.equals(symbols, "ANY")){
+        if(Objects.equals(symbols, ANY)){
             this.addTransition(sourceState, symbols, targetState);
             return;
         }
@@ -42,8 +55,8 @@ public class Automata {
         }
 
         // If there is a any state, accept all chars
-        if(table.containsKey(currentState + "/" + "ANY")){
-            return table.get(currentState + "/" + "ANY");
+        if(table.containsKey(currentState + "/" + ANY)){
+            return table.get(currentState + "/" + ANY);
         }
 
         // If no other condition is available, error will return
@@ -52,6 +65,7 @@ public class Automata {
 
     public void addAcceptState(String state, String name) {
         acceptStates.put(state, name);
+        compiled = null;
     }
 
     public boolean isAcceptState(String name) {
@@ -62,6 +76,263 @@ public class Automata {
         return acceptStates.get(state);
     }
 
+    // ------------------------------------------------------------
+    // Compiled table
+    // ------------------------------------------------------------
+
+    /**
+     * Builds the int-indexed transition table from the transitions declared so far.
+     * Chars that behave identically in every state share a class; chars never named
+     * explicitly fall into class 0, which only follows ANY transitions.
+     */
+    public DfaTable compile() {
+        if (compiled != null) return compiled;
+
+        // 1) Number the states, DEAD first
+        stateIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        names.add(null);
+        List<String[]> edges = new ArrayList<>();
+        int maxChar = -1;
+        for (Map.Entry<String, String> e : table.entrySet()) {
+            String key = e.getKey();
+            int sep = key.indexOf('/');
+            String from = key.substring(0, sep);
+            String symbol = key.substring(sep + 1);
+            edges.add(new String[]{from, symbol, e.getValue()});
+            number(from, names);
+            number(e.getValue(), names);
+            if (!ANY.equals(symbol)) maxChar = Math.max(maxChar, symbol.charAt(0));
+        }
+        for (String s : acceptStates.keySet()) {
+            number(s, names);
+        }
+        int states = names.size();
+        String[] stateNames = names.toArray(new String[0]);
+        String[] acceptNames = new String[states];
+        for (Map.Entry<String, String> e : acceptStates.entrySet()) {
+            acceptNames[stateIds.get(e.getKey())] = e.getValue();
+        }
+
+        // 2) One column per explicit char plus the ANY column, targets by state
+        int[] anyColumn = new int[states];
+        int[][] columns = new int[maxChar + 1][];
+        for (String[] edge : edges) {
+            if (ANY.equals(edge[1])) {
+                anyColumn[stateIds.get(edge[0])] = stateIds.get(edge[2]);
+            }
+        }
+        for (String[] edge : edges) {
+            if (ANY.equals(edge[1])) continue;
+            char c = edge[1].charAt(0);
+            if (columns[c] == null) columns[c] = anyColumn.clone();
+            columns[c][stateIds.get(edge[0])] = stateIds.get(edge[2]);
+        }
+
+        // 3) Merge identical columns into equivalence classes
+        HashMap<List<Integer>, Integer> classes = new HashMap<>();
+        List<int[]> classColumns = new ArrayList<>();
+        classes.put(asList(anyColumn), 0);
+        classColumns.add(anyColumn);
+        int[] charClass = new int[maxChar + 1];
+        for (int c = 0; c <= maxChar; c++) {
+            if (columns[c] == null) continue;
+            Integer cls = classes.get(asList(columns[c]));
+            if (cls == null) {
+                cls = classColumns.size();
+                classes.put(asList(columns[c]), cls);
+                classColumns.add(columns[c]);
+            }
+            charClass[c] = cls;
+        }
+
+        // 4) Flatten into [state * classCount + class]
+        int classCount = classColumns.size();
+        int[] transitions = new int[states * classCount];
+        for (int cls = 0; cls < classCount; cls++) {
+            int[] column = classColumns.get(cls);
+            for (int s = 0; s < states; s++) {
+                transitions[s * classCount + cls] = column[s];
+            }
+        }
+        compiled = new DfaTable(charClass, classCount, transitions, stateNames, acceptNames);
+        return compiled;
+    }
+
+    private void number(String state, List<String> names) {
+        if (!stateIds.containsKey(state)) {
+            stateIds.put(state, names.size());
+            names.add(state);
+        }
+    }
+
+    private static List<Integer> asList(int[] column) {
+        List<Integer> list = new ArrayList<>(column.length);
+        for (int v : column) list.add(v);
+        return list;
+    }
+
+    /**
+     * Returns the compiled id of the named state, or DEAD if the state is unknown.
+     */
+    public int stateId(String state) {
+        compile();
+        Integer id = stateIds.get(state);
+        return id == null ? DEAD : id;
+    }
+
+    /**
+     * Compiled counterpart of getNextState; returns DEAD when there is no transition.
+     * Call compile() (or stateId) once before using it.
+     */
+    public int nextState(int state, char inputSymbol) {
+        return compiled.nextState(state, inputSymbol);
+    }
+
+    public boolean isAcceptState(int state) {
+        return compiled.isAcceptState(state);
+    }
+
+    public String getAcceptStateName(int state) {
+        return compiled.getAcceptStateName(state);
+    }
+
+    public String getStateName(int state) {
+        return compiled.getStateName(state);
+    }
+
+    public int getStateCount() {
+        return compile().getStateCount();
+    }
+
+    public int getClassCount() {
+        return compile().getClassCount();
+    }
+
+    // ------------------------------------------------------------
+    // Minimization
+    // ------------------------------------------------------------
+
+    /**
+     * Compiles and merges equivalent states with Hopcroft's partition refinement.
+     * States with different accept names are never merged, nor are DEAD and the named
+     * distinguished states, which the caller may need to tell apart (e.g. the start state).
+     * A merged state keeps the name of its first member.
+     */
+    public DfaTable minimize(String... distinguished) {
+        DfaTable dfa = compile();
+        int states = dfa.getStateCount();
+        int classes = dfa.getClassCount();
+        int[] transitions = dfa.transitions();
+
+        // Incoming edges: inverse[cls][target] = states going to target on cls
+        BitSet[][] inverse = new BitSet[classes][states];
+        for (int s = 0; s < states; s++) {
+            for (int cls = 0; cls < classes; cls++) {
+                int t = transitions[s * classes + cls];
+                if (inverse[cls][t] == null) inverse[cls][t] = new BitSet(states);
+                inverse[cls][t].set(s);
+            }
+        }
+
+        // Initial partition by accept name; DEAD and distinguished states on their own
+        Set<String> kept = new HashSet<>(Arrays.asList(distinguished));
+        List<BitSet> blocks = new ArrayList<>();
+        HashMap<String, Integer> byKey = new HashMap<>();
+        for (int s = 0; s < states; s++) {
+            String name = dfa.getStateName(s);
+            String key = s == DEAD ? "/DEAD" : kept.contains(name) ? "/" + name : String.valueOf(dfa.getAcceptStateName(s));
+            Integer b = byKey.get(key);
+            if (b == null) {
+                b = blocks.size();
+                byKey.put(key, b);
+                blocks.add(new BitSet(states));
+            }
+            blocks.get(b).set(s);
+        }
+
+        // Refine until every block is consistent with every splitter
+        Deque<Integer> work = new ArrayDeque<>();
+        BitSet queued = new BitSet();
+        for (int b = 0; b < blocks.size(); b++) {
+            work.add(b);
+            queued.set(b);
+        }
+        while (!work.isEmpty()) {
+            int a = work.poll();
+            queued.clear(a);
+            BitSet splitter = (BitSet) blocks.get(a).clone();
+            for (int cls = 0; cls < classes; cls++) {
+                BitSet into = new BitSet(states);
+                for (int t = splitter.nextSetBit(0); t >= 0; t = splitter.nextSetBit(t + 1)) {
+                    if (inverse[cls][t] != null) into.or(inverse[cls][t]);
+                }
+                if (into.isEmpty()) continue;
+                for (int y = 0, n = blocks.size(); y < n; y++) {
+                    BitSet block = blocks.get(y);
+                    BitSet in = (BitSet) block.clone();
+                    in.and(into);
+                    if (in.isEmpty() || in.cardinality() == block.cardinality()) continue;
+                    BitSet out = (BitSet) block.clone();
+                    out.andNot(into);
+                    blocks.set(y, in);
+                    blocks.add(out);
+                    int z = blocks.size() - 1;
+                    if (queued.get(y) || in.cardinality() > out.cardinality()) {
+                        work.add(z);
+                        queued.set(z);
+                    } else if (!queued.get(y)) {
+                        work.add(y);
+                        queued.set(y);
+                    }
+                }
+            }
+        }
+
+        // Number the blocks by their first state, which keeps DEAD at 0
+        blocks.sort(Comparator.comparingInt(b -> b.nextSetBit(0)));
+        int[] blockOf = new int[states];
+        for (int b = 0; b < blocks.size(); b++) {
+            BitSet block = blocks.get(b);
+            for (int s = block.nextSetBit(0); s >= 0; s = block.nextSetBit(s + 1)) blockOf[s] = b;
+        }
+        int count = blocks.size();
+        String[] stateNames = new String[count];
+        String[] acceptNames = new String[count];
+        int[][] columns = new int[classes][count];
+        for (int b = 0; b < count; b++) {
+            int s = blocks.get(b).nextSetBit(0);
+            stateNames[b] = dfa.getStateName(s);
+            acceptNames[b] = dfa.getAcceptStateName(s);
+            for (int cls = 0; cls < classes; cls++) {
+                columns[cls][b] = blockOf[transitions[s * classes + cls]];
+            }
+        }
+
+        // Fewer states may leave char classes that now behave the same
+        HashMap<List<Integer>, Integer> merged = new HashMap<>();
+        int[] classOf = new int[classes];
+        List<int[]> mergedColumns = new ArrayList<>();
+        for (int cls = 0; cls < classes; cls++) {
+            Integer m = merged.get(asList(columns[cls]));
+            if (m == null) {
+                m = mergedColumns.size();
+                merged.put(asList(columns[cls]), m);
+                mergedColumns.add(columns[cls]);
+            }
+            classOf[cls] = m;
+        }
+        int[] charClass = dfa.charClasses().clone();
+        for (int c = 0; c < charClass.length; c++) charClass[c] = classOf[charClass[c]];
+        int classCount = mergedColumns.size();
+        int[] table = new int[count * classCount];
+        for (int cls = 0; cls < classCount; cls++) {
+            int[] column = mergedColumns.get(cls);
+            for (int b = 0; b < count; b++) table[b * classCount + cls] = column[b];
+        }
+        return new DfaTable(charClass, classCount, table, stateNames, acceptNames);
+    }
+
     public void printTable() {
         System.out.println("DFA Transition Table:");
         for (String state : table.keySet()) {
@@ -0,0 +1,170 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable compiled DFA: int states, char equivalence classes and a flat transition
+ * table, as produced by Automata.compile() or Automata.minimize(). It holds no mutable
+ * state, so one instance can be shared by any number of lexers and threads, and it can
+ * be written to and read back from a compact binary form.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class DfaTable {
+
+    /** Id of the error state; every input leads from it back to itself. */
+    public static final int DEAD = 0;
+
+    private static final int MAGIC = 0x44464131; // "DFA1"
+
+    private final int[] charClass;
+    private final int classCount;
+    private final int[] transitions;
+    private final String[] stateNames;
+    private final String[] acceptNames;
+
+    DfaTable(int[] charClass, int classCount, int[] transitions, String[] stateNames, String[] acceptNames) {
+        this.charClass = charClass;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.stateNames = stateNames;
+        this.acceptNames = acceptNames;
+    }
+
+    /**
+     * Returns the next state, or DEAD when there is no transition.
+     */
+    public int nextState(int state, char inputSymbol) {
+        int cls = inputSymbol < charClass.length ? charClass[inputSymbol] : 0;
+        return transitions[state * classCount + cls];
+    }
+
+    /**
+     * Returns the id of the named state, or DEAD if there is none. After minimization
+     * merged states keep a single name, so only states kept apart are sure to be found.
+     */
+    public int stateId(String state) {
+        for (int i = 1; i < stateNames.length; i++) {
+            if (state.equals(stateNames[i])) return i;
+        }
+        return DEAD;
+    }
+
+    public boolean isAcceptState(int state) {
+        return acceptNames[state] != null;
+    }
+
+    public String getAcceptStateName(int state) {
+        return acceptNames[state];
+    }
+
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    int[] charClasses() {
+        return charClass;
+    }
+
+    int[] transitions() {
+        return transitions;
+    }
+
+    // ------------------------------------------------------------
+    // Binary form
+    // ------------------------------------------------------------
+
+    /**
+     * Writes the table: a header, the char classes and transitions as 16-bit values,
+     * then the state and accept names (empty for none).
+     */
+    public void write(OutputStream out) throws IOException {
+        if (stateNames.length > 0xFFFF || classCount > 0xFFFF) {
+            throw new IOException("Table too large for the binary form");
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(stateNames.length);
+        data.writeShort(classCount);
+        data.writeShort(charClass.length);
+        for (int cls : charClass) data.writeShort(cls);
+        for (int target : transitions) data.writeShort(target);
+        for (int i = 0; i < stateNames.length; i++) {
+            data.writeUTF(stateNames[i] == null ? "" : stateNames[i]);
+            data.writeUTF(acceptNames[i] == null ? "" : acceptNames[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * 64-bit hash of the binary form; it changes whenever states, transitions or accept
+     * names do.
+     */
+    public long fingerprint() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(TokenCache.sha256().digest(bytes.toByteArray())).getLong();
+    }
+
+    public static DfaTable read(InputStream in) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(in.readAllBytes());
+        try {
+            if (bytes.getInt() != MAGIC) {
+                throw new IOException("Not a DFA table");
+            }
+            int states = Short.toUnsignedInt(bytes.getShort());
+            int classCount = Short.toUnsignedInt(bytes.getShort());
+            int[] charClass = new int[Short.toUnsignedInt(bytes.getShort())];
+            int[] transitions = new int[states * classCount];
+            ShortBuffer values = bytes.asShortBuffer();
+            for (int c = 0; c < charClass.length; c++) charClass[c] = Short.toUnsignedInt(values.get());
+            for (int i = 0; i < transitions.length; i++) transitions[i] = Short.toUnsignedInt(values.get());
+            bytes.position(bytes.position() + 2 * values.position());
+
+            DataInputStream names = new DataInputStream(
+                    new ByteArrayInputStream(bytes.array(), bytes.position(), bytes.remaining()));
+            String[] stateNames = new String[states];
+            String[] acceptNames = new String[states];
+            for (int i = 0; i < states; i++) {
+                String name = names.readUTF();
+                String accept = names.readUTF();
+                stateNames[i] = name.isEmpty() ? null : name;
+                acceptNames[i] = accept.isEmpty() ? null : accept;
+            }
+            return new DfaTable(charClass, classCount, transitions, stateNames, acceptNames);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated DFA table", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DfaTable)) return false;
+        DfaTable t = (DfaTable) o;
+        return classCount == t.classCount
+                && Arrays.equals(charClass, t.charClass)
+                && Arrays.equals(transitions, t.transitions)
+                && Arrays.equals(stateNames, t.stateNames)
+                && Arrays.equals(acceptNames, t.acceptNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(transitions) + Arrays.hashCode(acceptNames);
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+/**
+ * Interns the names of one compilation: each distinct name gets an int id, 0, 1, 2...
+ * in the order it is first seen, so that the parser and the semantic analyzer compare
+ * and look names up as ints. The lexer interns every identifier token as it adds it
+ * (see TokenSource.identifier), straight from the source text, without building a
+ * String for names it has seen before. Each name's ParseTable terminal id is kept with
+ * it, looked up the first time it is asked for (see terminal).
+ * The names are two open addressing tables over int arrays. The lexer fills the first
+ * one, with this thread only, then freezes it (see freeze) so that the analyzers of a
+ * parallel parse read it without locking. Names added after that (a non-identifier
+ * token used as a name, in input with errors, or an edit) go to the second one, whose
+ * methods are synchronized.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class Identifiers {
+
+    // Names seen before freeze(), ids [0, names.size)
+    private final Table names = new Table();
+    // Names added after freeze(), ids from names.size on
+    private final Table late = new Table();
+    private volatile boolean frozen;
+
+    /**
+     * Id of text [start, start + length) of a token's source, added if it is new.
+     */
+    public int intern(CharSequence text, int start, int length) {
+        int h = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 && text instanceof Utf8Text) {
+                // Bytes, not chars: hash the decoded name, as intern(String) does
+                return intern(text.subSequence(start, end).toString());
+            }
+            h = 31 * h + c;
+        }
+        int id = names.find(text, start, length, h);
+        if (id >= 0) {
+            return id;
+        }
+        String name = text.subSequence(start, start + length).toString();
+        return frozen ? internLate(name, h) : names.add(name, h, -id - 1);
+    }
+
+    /**
+     * Id of name, added if it is new.
+     */
+    public int intern(String name) {
+        int h = name.hashCode();
+        int id = names.find(name, h);
+        if (id >= 0) {
+            return id;
+        }
+        return frozen ? internLate(name, h) : names.add(name, h, -id - 1);
+    }
+
+    /**
+     * Id of name, or -1 if it was never interned.
+     */
+    public int find(String name) {
+        int h = name.hashCode();
+        int id = names.find(name, h);
+        if (id >= 0) {
+            return id;
+        }
+        return frozen ? findLate(name, h) : -1;
+    }
+
+    public String name(int id) {
+        return id < names.size ? names.names[id] : lateName(id - names.size);
+    }
+
+    /**
+     * ParseTable terminal id of the name whose id is id, or ParseTable.NONE.
+     */
+    public int terminal(int id) {
+        return id < names.size ? names.terminal(id) : lateTerminal(id - names.size);
+    }
+
+    public int size() {
+        return frozen ? names.size + lateSize() : names.size;
+    }
+
+    /**
+     * Stops adding names to the table read without locking. Later ones still get ids,
+     * but through a synchronized table; call it once the tokens are lexed and before
+     * they are shared between threads.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Forgets every name; ids start from 0 again and the table is no longer frozen.
+     */
+    public synchronized void clear() {
+        names.clear();
+        late.clear();
+        frozen = false;
+    }
+
+    private synchronized int internLate(String name, int h) {
+        int id = late.find(name, h);
+        return names.size + (id >= 0 ? id : late.add(name, h, -id - 1));
+    }
+
+    private synchronized int findLate(String name, int h) {
+        int id = late.find(name, h);
+        return id >= 0 ? names.size + id : -1;
+    }
+
+    private synchronized String lateName(int id) {
+        return late.names[id];
+    }
+
+    private synchronized int lateTerminal(int id) {
+        return late.terminal(id);
+    }
+
+    private synchronized int lateSize() {
+        return late.size;
+    }
+
+    /**
+     * Names with their hashes and terminal ids, by index, and an open addressing table
+     * of index + 1 by hash, 0 for a free slot.
+     */
+    private static final class Table {
+        // Terminal id not looked up yet
+        static final int UNKNOWN = ParseTable.NONE - 1;
+
+        String[] names = new String[64];
+        int[] hashes = new int[64];
+        int[] terminals = new int[64];
+        int[] table = new int[128];
+        int size;
+
+        /**
+         * Index of the name equal to text [start, start + length), or -(slot + 1) of
+         * the free slot it would go in.
+         */
+        int find(CharSequence text, int start, int length, int h) {
+            int mask = table.length - 1;
+            for (int slot = spread(h) & mask; ; slot = (slot + 1) & mask) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    return -slot - 1;
+                }
+                if (hashes[id] == h && Utf8Text.regionEquals(text, start, length, names[id])) {
+                    return id;
+                }
+            }
+        }
+
+        int find(String name, int h) {
+            int mask = table.length - 1;
+            for (int slot = spread(h) & mask; ; slot = (slot + 1) & mask) {
+                int id = table[slot] - 1;
+                if (id < 0) {
+                    return -slot - 1;
+                }
+                if (hashes[id] == h && names[id].equals(name)) {
+                    return id;
+                }
+            }
+        }
+
+        int add(String name, int h, int slot) {
+            int id = size++;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, id * 2);
+                hashes = Arrays.copyOf(hashes, id * 2);
+                terminals = Arrays.copyOf(terminals, id * 2);
+            }
+            names[id] = name;
+            hashes[id] = h;
+            terminals[id] = UNKNOWN;
+            table[slot] = id + 1;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        /**
+         * Terminal id of name i. Threads reading a frozen table may look it up at the
+         * same time; they all store the same value.
+         */
+        int terminal(int i) {
+            int t = terminals[i];
+            if (t == UNKNOWN) {
+                t = ParseTable.terminal(names[i]);
+                terminals[i] = t;
+            }
+            return t;
+        }
+
+        void clear() {
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+
+        private void rehash() {
+            int[] grown = new int[table.length * 2];
+            int mask = grown.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = spread(hashes[id]) & mask;
+                while (grown[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot] = id + 1;
+            }
+            table = grown;
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * A map from int keys, such as Identifiers ids, to values: open addressing with linear
+ * probing over an int array of keys and an array of values, so there is no boxing and
+ * no entry object per key. Keys are never removed; a key can be mapped to null.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+final class IntMap<V> {
+
+    // key + 1 in each slot, 0 if the slot is free
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    IntMap() {
+        this(16);
+    }
+
+    IntMap(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 4) - 1) << 2;
+        keys = new int[n];
+        values = new Object[n];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = spread(key) & mask; ; slot = (slot + 1) & mask) {
+            int k = keys[slot];
+            if (k == key + 1) {
+                return (V) values[slot];
+            }
+            if (k == 0) {
+                return null;
+            }
+        }
+    }
+
+    void put(int key, V value) {
+        int mask = keys.length - 1;
+        int slot = spread(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key + 1) {
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        if (keys[slot] == 0) {
+            keys[slot] = key + 1;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = spread(oldKeys[i] - 1) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Fibonacci hashing: consecutive ids land far apart
+    private static int spread(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
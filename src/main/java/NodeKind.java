@@ -0,0 +1,60 @@
+/**
+ * Kinds of SyntaxTree nodes built by TheParser. Each node also keeps one token: the
+ * operator for BINARY and UNARY, and the first token of the construct for the others.
+ * Children, in order:
+ * <pre>
+ * PROGRAM     IDENTIFIER (METHOD | VARIABLE)*
+ * METHOD      TYPE IDENTIFIER PARAMS BLOCK
+ * PARAMS      PARAM*
+ * PARAM       TYPE IDENTIFIER
+ * VARIABLE    TYPE IDENTIFIER [expression]
+ * BLOCK       statement*
+ * ASSIGNMENT  IDENTIFIER expression
+ * CALL        IDENTIFIER ARGUMENTS
+ * ARGUMENTS   expression*
+ * RETURN      [expression]
+ * PRINT       expression
+ * IF          expression statement [statement]
+ * WHILE       expression statement
+ * DO_WHILE    BLOCK expression
+ * FOR         (VARIABLE | ASSIGNMENT | EMPTY) (expression | EMPTY) (ASSIGNMENT | EMPTY) statement
+ * SWITCH      expression CASE* [DEFAULT]
+ * CASE        (LITERAL | IDENTIFIER) statement*
+ * DEFAULT     statement*
+ * BINARY      expression expression
+ * UNARY       expression
+ * </pre>
+ * BREAK, CONTINUE, EMPTY, LITERAL, IDENTIFIER and TYPE are leaves. After a syntax
+ * error a node may lack some of its children.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public enum NodeKind {
+	PROGRAM,
+	METHOD,
+	PARAMS,
+	PARAM,
+	VARIABLE,
+	BLOCK,
+	ASSIGNMENT,
+	CALL,
+	ARGUMENTS,
+	RETURN,
+	PRINT,
+	IF,
+	WHILE,
+	DO_WHILE,
+	FOR,
+	SWITCH,
+	CASE,
+	DEFAULT,
+	BREAK,
+	CONTINUE,
+	EMPTY,
+	BINARY,
+	UNARY,
+	LITERAL,
+	IDENTIFIER,
+	TYPE
+}
@@ -0,0 +1,43 @@
+/**
+ * Receives parse events from TheParser (rules entered and left, tokens matched, errors)
+ * and from its SemanticAnalizer (variables declared). Every method does nothing by
+ * default; NONE, the listener a parser starts with, overrides none of them, so the calls
+ * compile down to nothing and no trace text is built unless a listener is set.
+ * TreePrinter prints the indented parse tree.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public interface ParseListener {
+
+    ParseListener NONE = new ParseListener() {
+    };
+
+    default void enterRule(String rule) {
+    }
+
+    default void exitRule() {
+    }
+
+    /**
+     * Something matched inside the current rule, e.g. "Found ';'" or "Identifier: x".
+     */
+    default void token(String message) {
+    }
+
+    /**
+     * A syntax or semantic error; the message is also printed to System.err.
+     */
+    default void error(String message) {
+    }
+
+    default void variable(String id, String type, String scope, String value) {
+    }
+
+    /**
+     * The parse is over; nothing more will be reported.
+     */
+    default void done() {
+    }
+
+}
@@ -0,0 +1,245 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FirstSets and FollowSets compiled into bitsets for ParserUtils.call. Rules are int
+ * ids (the constants below) and terminals are interned to int ids: ids 0..n-1 are the
+ * TokenKind ordinals, so a token's kind is its own id, and the other strings in the
+ * sets (keywords, operators, delimiters) and the expression operators follow. Each
+ * rule's FIRST and FOLLOW set is a row of 64-bit words, so a membership test is a shift
+ * and a mask. The lexer gives each token its terminal id (see TokenSource.terminal), so
+ * parsing looks no value up. It also holds the expression operators, indexed by
+ * terminal id, for TheParser's precedence climbing.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class ParseTable {
+
+    // Rule ids, in the order of the names in RULES
+    public static final int PROGRAM      = 0;
+    public static final int METHOD       = 1;
+    public static final int BODY         = 2;
+    public static final int SIMPLE_STMT  = 3;
+    public static final int CONTROL_STMT = 4;
+    public static final int VARIABLE     = 5;
+    public static final int ASSIGNMENT   = 6;
+    public static final int CALL_METHOD  = 7;
+    public static final int RETURN       = 8;
+    public static final int PRINT        = 9;
+    public static final int IF           = 10;
+    public static final int WHILE        = 11;
+    public static final int DO_WHILE     = 12;
+    public static final int FOR          = 13;
+    public static final int SWITCH       = 14;
+    public static final int PARAMS       = 15;
+    public static final int PARAM_VALUES = 16;
+    public static final int EXPRESSION   = 17;
+    public static final int X            = 18;
+    public static final int Y            = 19;
+    public static final int R            = 20;
+    public static final int E            = 21;
+    public static final int A            = 22;
+    public static final int B            = 23;
+    public static final int C            = 24;
+    public static final int TYPE         = 25;
+
+    /** Terminal id of a value that appears in no FIRST or FOLLOW set. */
+    public static final int NONE = -1;
+
+    // Keys of FIRST_MAP and FOLLOW_MAP, indexed by rule id
+    private static final String[] RULES = {
+            "program", "method", "body", "simpleStmt", "controlStmt", "variable",
+            "assignment", "callMethod", "return", "print", "if", "while", "doWhile",
+            "for", "switch", "params", "paramValues", "expression", "x", "y",
+            "R", "E", "A", "B", "C", "type"
+    };
+
+    /**
+     * An expression operator. Binding power grows with precedence; the operand (the right
+     * one for binary operators) must start with a token in FIRST(operand), which is the
+     * rule for the level below the operator in the old RULE_EXPRESSION..RULE_C chain.
+     */
+    public static final class Operator {
+        public final String message;
+        public final int precedence;
+        public final boolean rightAssociative;
+        // Prefix operators only: may be written more than once in a row, as in !!x
+        public final boolean repeats;
+        public final int operand;
+
+        Operator(String message, int precedence, boolean rightAssociative, boolean repeats, int operand) {
+            this.message = message;
+            this.precedence = precedence;
+            this.rightAssociative = rightAssociative;
+            this.repeats = repeats;
+            this.operand = operand;
+        }
+    }
+
+    private static final Operator OR         = new Operator("Operator |", 1, false, false, X);
+    private static final Operator AND        = new Operator("Operator &", 2, false, false, Y);
+    private static final Operator NOT        = new Operator("!", 3, false, true, R);
+    private static final Operator RELATIONAL = new Operator("Relational op", 4, false, false, E);
+    private static final Operator ADDITIVE   = new Operator("Additive op", 5, false, false, A);
+    private static final Operator MUL        = new Operator("Mul op", 6, false, false, B);
+    private static final Operator NEGATE     = new Operator("Unary -", 7, false, false, C);
+
+    // Operators by spelling, in a fixed order so that terminal ids do not change
+    private static final Map<String, Operator> BINARY_OPERATORS = new LinkedHashMap<>();
+    private static final Map<String, Operator> PREFIX_OPERATORS = new LinkedHashMap<>();
+
+    static {
+        spell(BINARY_OPERATORS, OR, "|", "||");
+        spell(BINARY_OPERATORS, AND, "&", "&&");
+        spell(BINARY_OPERATORS, RELATIONAL, "<", ">", "==", "!=", "<=", ">=");
+        spell(BINARY_OPERATORS, ADDITIVE, "+", "-");
+        spell(BINARY_OPERATORS, MUL, "*", "/");
+        spell(PREFIX_OPERATORS, NOT, "!");
+        spell(PREFIX_OPERATORS, NEGATE, "-");
+    }
+
+    private static final Map<String, Integer> TERMINALS = new HashMap<>();
+    // The same, for lookups straight from a token's source: terminal id + 1 in each slot,
+    // 0 if the slot is free, and each terminal's spelling by id
+    private static final int[] SPELLED;
+    private static final String[] SPELLINGS;
+    private static final int WORDS;
+    private static final long[] FIRST;
+    private static final long[] FOLLOW;
+    private static final Operator[] BINARY;
+    private static final Operator[] PREFIX;
+
+    static {
+        Set<String> names = new LinkedHashSet<>();
+        for (TokenKind kind : TokenKind.values()) {
+            names.add(kind.name());
+        }
+        for (String rule : RULES) {
+            names.addAll(FirstSets.FIRST_MAP.get(rule));
+            names.addAll(FollowSets.FOLLOW_MAP.get(rule));
+        }
+        names.addAll(BINARY_OPERATORS.keySet());
+        names.addAll(PREFIX_OPERATORS.keySet());
+        for (String name : names) {
+            TERMINALS.put(name, TERMINALS.size());
+        }
+        SPELLINGS = names.toArray(new String[0]);
+        SPELLED = new int[Integer.highestOneBit(SPELLINGS.length) << 2];
+        for (int t = 0; t < SPELLINGS.length; t++) {
+            int slot = spread(SPELLINGS[t].hashCode()) & (SPELLED.length - 1);
+            while (SPELLED[slot] != 0) {
+                slot = (slot + 1) & (SPELLED.length - 1);
+            }
+            SPELLED[slot] = t + 1;
+        }
+        BINARY = new Operator[TERMINALS.size()];
+        PREFIX = new Operator[TERMINALS.size()];
+        BINARY_OPERATORS.forEach((name, op) -> BINARY[TERMINALS.get(name)] = op);
+        PREFIX_OPERATORS.forEach((name, op) -> PREFIX[TERMINALS.get(name)] = op);
+        WORDS = (TERMINALS.size() + 63) >>> 6;
+        FIRST = new long[RULES.length * WORDS];
+        FOLLOW = new long[RULES.length * WORDS];
+        for (int rule = 0; rule < RULES.length; rule++) {
+            fill(FIRST, rule, FirstSets.FIRST_MAP.get(RULES[rule]));
+            fill(FOLLOW, rule, FollowSets.FOLLOW_MAP.get(RULES[rule]));
+        }
+    }
+
+    private ParseTable() {
+    }
+
+    private static void spell(Map<String, Operator> operators, Operator op, String... spellings) {
+        for (String spelling : spellings) {
+            operators.put(spelling, op);
+        }
+    }
+
+    private static void fill(long[] table, int rule, Set<String> set) {
+        for (String name : set) {
+            int t = TERMINALS.get(name);
+            table[rule * WORDS + (t >>> 6)] |= 1L << t;
+        }
+    }
+
+    /**
+     * Id of the terminal spelled value, or NONE. A token matches a set if its value's id
+     * or its kind's ordinal is in it, just as FIRST_MAP matched the value or type string.
+     */
+    public static int terminal(String value) {
+        Integer t = TERMINALS.get(value);
+        return t == null ? NONE : t;
+    }
+
+    /**
+     * terminal(value) for the value [start, start + length) of source, read in place, so
+     * that a lexer can give each token its id without building its value.
+     */
+    public static int terminal(CharSequence source, int start, int length) {
+        int h = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            char c = source.charAt(i);
+            if (c >= 0x80) {
+                // Every terminal is ASCII
+                return NONE;
+            }
+            h = 31 * h + c;
+        }
+        int mask = SPELLED.length - 1;
+        for (int slot = spread(h) & mask; SPELLED[slot] != 0; slot = (slot + 1) & mask) {
+            int t = SPELLED[slot] - 1;
+            if (Utf8Text.regionEquals(source, start, length, SPELLINGS[t])) {
+                return t;
+            }
+        }
+        return NONE;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    public static int terminalCount() {
+        return TERMINALS.size();
+    }
+
+    public static int ruleCount() {
+        return RULES.length;
+    }
+
+    /**
+     * The rule's name as used in FIRST_MAP, FOLLOW_MAP and error messages.
+     */
+    public static String ruleName(int rule) {
+        return RULES[rule];
+    }
+
+    /**
+     * The binary operator spelled by terminal t, or null.
+     */
+    public static Operator binary(int t) {
+        return t >= 0 ? BINARY[t] : null;
+    }
+
+    /**
+     * The prefix operator spelled by terminal t, or null.
+     */
+    public static Operator prefix(int t) {
+        return t >= 0 ? PREFIX[t] : null;
+    }
+
+    public static boolean inFirst(int rule, int valueId, int kindId) {
+        return contains(FIRST, rule, valueId) || contains(FIRST, rule, kindId);
+    }
+
+    public static boolean inFollow(int rule, int valueId, int kindId) {
+        return contains(FOLLOW, rule, valueId) || contains(FOLLOW, rule, kindId);
+    }
+
+    private static boolean contains(long[] table, int rule, int t) {
+        return t >= 0 && (table[rule * WORDS + (t >>> 6)] & (1L << t)) != 0;
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.ArrayDeque;
+
+/**
+ * A few idle TheParser instances per thread, reset and handed out again instead of
+ * building a parser (and its semantic analyzer) for every parse. A parser holds no
+ * state shared with other parsers, so each thread can parse on its own; acquire and
+ * release may nest, e.g. a parse that starts another on the same thread.
+ *
+ * <pre>
+ * TheParser parser = ParserPool.acquire(tokens);
+ * try {
+ *     parser.run();
+ * } finally {
+ *     ParserPool.release(parser);
+ * }
+ * </pre>
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class ParserPool {
+
+    /** Idle parsers kept per thread; more are left to the garbage collector. */
+    public static final int KEEP = 4;
+
+    private static final TokenBuffer EMPTY = new TokenBuffer("");
+
+    static {
+        // Every thread's idle parsers share it
+        EMPTY.identifiers().freeze();
+    }
+
+    private static final ThreadLocal<ArrayDeque<TheParser>> IDLE =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ParserPool() {
+    }
+
+    /**
+     * A parser for tokens, idle on this thread or else new, with no listener, tree or
+     * error stream set and two-phase mode off.
+     */
+    public static TheParser acquire(TokenSource tokens) {
+        TheParser parser = IDLE.get().pollFirst();
+        if (parser == null) {
+            return new TheParser(tokens);
+        }
+        parser.reset(tokens);
+        return parser;
+    }
+
+    /**
+     * Gives a parser back once its run is over, for this thread's next acquire. Its
+     * listener, tree and error stream are cleared, two-phase mode turned off and its
+     * tokens let go.
+     */
+    public static void release(TheParser parser) {
+        parser.setListener(ParseListener.NONE);
+        parser.setTree(null);
+        parser.setErrorStream(null);
+        parser.setTwoPhase(false);
+        parser.reset(EMPTY);
+        ArrayDeque<TheParser> idle = IDLE.get();
+        if (idle.size() < KEEP && !idle.contains(parser)) {
+            idle.addFirst(parser);
+        }
+    }
+}
@@ -1,24 +1,32 @@
 // ParserUtils.java
 
+import java.io.PrintStream;
 import java.util.Set;
-import java.util.Vector;
 
 /**
  * Utility class that encapsulates common parsing functionality:
- *  - Token storage and index (tokens, currentToken)
- *  - enterRule/exitRule tracing
+ *  - Token access and index (tokens, currentToken) over a TokenSource, which is
+ *    either a TokenBuffer or a TokenStream lexing on demand; mark/reset for backtracking
+ *  - enterRule/exitRule/found events, sent to a ParseListener (none by default)
+ *  - open/close/leaf/wrap to build a SyntaxTree, when one is set
  *  - expectValue/expectIdentifier/expectType checks
  *  - error reporting and simple panic‐mode recovery based on SYNC set
- *  - “call” method to drive FIRST/FOLLOW‐based rule dispatch
- *  - peekValue/peekType accessors
+ *  - “call” method to drive FIRST/FOLLOW‐based rule dispatch (see ParseTable)
+ *  - peekValue/peekType/peekKind/peekIs accessors
  *
  * To use: have your main parser (e.g. TheParser) extend ParserUtils, and invoke
  * these protected methods from within each RULE_* method.
  */
 public class ParserUtils {
-    protected final Vector<TheToken> tokens;
+    protected TokenSource tokens;
     protected int currentToken;
-    private static int indent = 0;
+    protected ParseListener listener = ParseListener.NONE;
+    // False while the listener is NONE, so that trace messages are not even built
+    private boolean tracing;
+    // Tree being built, or null
+    protected SyntaxTree tree;
+    // Where errors are printed; null means System.err
+    private PrintStream err;
 
     // Synchronization set used by error(...) to decide whether to skip one token
     protected static final Set<String> SYNC = Set.of(
@@ -26,31 +34,142 @@ public class ParserUtils {
             "do", "switch", "return"
     );
 
-    public ParserUtils(Vector<TheToken> tokens) {
+    public ParserUtils(TokenSource tokens) {
         this.tokens = tokens;
         this.currentToken = 0;
     }
 
     /**
-     * Print a tracing line when entering a rule, with indentation.
+     * Start over on new tokens, keeping the listener, tree and error stream.
+     */
+    public void reset(TokenSource tokens) {
+        this.tokens = tokens;
+        this.currentToken = 0;
+    }
+
+    /**
+     * Send rule, token and error events to listener; ParseListener.NONE turns them off.
+     */
+    public void setListener(ParseListener listener) {
+        this.listener = listener;
+        this.tracing = listener != ParseListener.NONE;
+    }
+
+    public ParseListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Build the parse's SyntaxTree into tree; null (the default) builds none.
+     */
+    public void setTree(SyntaxTree tree) {
+        this.tree = tree;
+    }
+
+    public SyntaxTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Print errors to err instead of System.err; null goes back to System.err.
+     */
+    public void setErrorStream(PrintStream err) {
+        this.err = err;
+    }
+
+    /**
+     * The stream errors are printed to.
+     */
+    protected PrintStream errors() {
+        return err != null ? err : System.err;
+    }
+
+    /**
+     * Remember the current position so the parser can come back to it with reset(mark).
+     * On a TokenStream this keeps the marked tokens inside the lookahead window.
+     */
+    protected int mark() {
+        return tokens.mark(currentToken);
+    }
+
+    /**
+     * Go back to a position returned by mark() and release it.
+     */
+    protected void reset(int mark) {
+        currentToken = mark;
+        tokens.release(mark);
+    }
+
+    /**
+     * Report entering a rule.
      */
     protected void enterRule(String name) {
-        System.out.println(" ".repeat(indent * 2) + "- " + name);
-        indent++;
+        if (tracing) listener.enterRule(name);
     }
 
     /**
-     * Decrease indentation when exiting a rule.
+     * Report leaving the current rule.
      */
     protected void exitRule() {
-        indent = Math.max(0, indent - 1);
+        if (tracing) listener.exitRule();
     }
 
     /**
-     * Print a tracing line for something “found” inside a rule.
+     * Report something “found” inside a rule.
      */
     protected void found(String msg) {
-        System.out.println(" ".repeat(indent * 2) + "-- " + msg);
+        if (tracing) listener.token(msg);
+    }
+
+    /**
+     * Report label + value found inside a rule; the two are only joined when tracing.
+     */
+    protected void found(String label, String value) {
+        if (tracing) listener.token(label + value);
+    }
+
+    /**
+     * Open a tree node for the construct starting at the current token.
+     */
+    protected void open(NodeKind kind) {
+        if (tree != null) tree.open(kind, currentToken);
+    }
+
+    /**
+     * Close the innermost open tree node.
+     */
+    protected void close() {
+        if (tree != null) tree.close();
+    }
+
+    /**
+     * Add a tree node without children for the current token.
+     */
+    protected void leaf(NodeKind kind) {
+        if (tree != null) tree.leaf(kind, currentToken);
+    }
+
+    /**
+     * Open a tree node for the current token around the last node added since from
+     * (see SyntaxTree.wrap); used for binary operators.
+     */
+    protected void wrap(NodeKind kind, int from) {
+        if (tree != null) tree.wrap(kind, currentToken, from);
+    }
+
+    /**
+     * Number of tree nodes so far, to pass to wrap(); 0 if no tree is built.
+     */
+    protected int nodeCount() {
+        return tree != null ? tree.size() : 0;
+    }
+
+    /**
+     * Report an error to the listener and print it to the error stream.
+     */
+    protected void report(String message) {
+        listener.error(message);
+        errors().println(message);
     }
 
     /**
@@ -68,8 +187,8 @@ public class ParserUtils {
      * and return true; otherwise report an error and return false.
      */
     protected boolean expectValue(String v, String rule) {
-        if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(v)) {
-            found("Found '" + v + "'");
+        if (tokens.has(currentToken) && tokens.valueEquals(currentToken, v)) {
+            if (tracing) listener.token("Found '" + v + "'");
             currentToken++;
             return true;
         }
@@ -82,8 +201,9 @@ public class ParserUtils {
      * otherwise report an error and return false.
      */
     protected boolean expectIdentifier(String rule) {
-        if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("ID")) {
-            found("Identifier: " + tokens.get(currentToken).getValue());
+        if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.ID) {
+            if (tracing) listener.token("Identifier: " + tokens.value(currentToken));
+            leaf(NodeKind.IDENTIFIER);
             currentToken++;
             return true;
         }
@@ -96,8 +216,9 @@ public class ParserUtils {
      * If so, consume it and return true; otherwise report an error and return false.
      */
     protected boolean expectType(String rule) {
-        if (currentToken < tokens.size() && isType(tokens.get(currentToken).getValue())) {
-            found("Type: " + tokens.get(currentToken).getValue());
+        if (tokens.has(currentToken) && isType(tokens.value(currentToken))) {
+            if (tracing) listener.token("Type: " + tokens.value(currentToken));
+            leaf(NodeKind.TYPE);
             currentToken++;
             return true;
         }
@@ -111,69 +232,100 @@ public class ParserUtils {
      * just do nothing (letting the caller loop handle it).
      */
     protected void error(String rule, String expected) {
-        if (currentToken >= tokens.size()) return;
+        if (!tokens.has(currentToken)) return;
 
-        System.err.printf("%s: expected %s at %s%n",
-                rule, expected, tokens.get(currentToken));
-        if (!SYNC.contains(tokens.get(currentToken).getValue())) {
+        report(String.format("%s: expected %s at %s",
+                rule, expected, tokens.get(currentToken)));
+        if (!SYNC.contains(tokens.value(currentToken))) {
             currentToken++;
         }
     }
 
     /**
-     * “call” drives a FIRST/FOLLOW‐based dispatch:
-     *  - If peekValue() or peekType() belongs to FIRST(ruleName), run action.run() and return.
-     *  - Otherwise, skip tokens until one is in FOLLOW(ruleName) or EOF.
-     *  - FIRST_MAP and FOLLOW_MAP are assumed to be populated elsewhere.
+     * “call” drives a FIRST/FOLLOW‐based dispatch over ParseTable:
+     *  - If the current token’s value or kind is in FIRST(rule), run dispatch(rule) and return.
+     *  - Otherwise, skip tokens until one is in FOLLOW(rule) or EOF.
      */
-    public void call(Runnable action, String ruleName) {
-        while (currentToken < tokens.size()) {
-            String val  = tokens.get(currentToken).getValue();
-            String type = tokens.get(currentToken).getType();
-
-            boolean inFirst =
-                    FirstSets.FIRST_MAP.get(ruleName).contains(val) ||
-                            FirstSets.FIRST_MAP.get(ruleName).contains(type);
+    public void call(int rule) {
+        if (atFirst(rule)) {
+            dispatch(rule);
+        }
+    }
 
-            if (inFirst) {
-                action.run();
-                return;
+    /**
+     * The token check of call(rule) without the dispatch: true once the current token is
+     * in FIRST(rule), skipping (and reporting) tokens that are not; false if it stopped at
+     * a token in FOLLOW(rule) or at EOF instead.
+     */
+    protected boolean atFirst(int rule) {
+        while (tokens.has(currentToken)) {
+            if (ParseTable.inFirst(rule, terminal(), tokens.kind(currentToken).ordinal())) {
+                return true;
             }
 
-            System.err.println(ruleName + ": error on " + val);
+            report(ParseTable.ruleName(rule) + ": error on " + tokens.value(currentToken));
             currentToken++;
-            if (currentToken >= tokens.size()) return;
-
-            val  = tokens.get(currentToken).getValue();
-            type = tokens.get(currentToken).getType();
-            boolean inFollow =
-                    FollowSets.FOLLOW_MAP.get(ruleName).contains(val) ||
-                            FollowSets.FOLLOW_MAP.get(ruleName).contains(type);
+            if (!tokens.has(currentToken)) return false;
 
-            if (inFollow) {
-                System.err.println(ruleName + ": recovered at " + val);
-                return;
+            if (ParseTable.inFollow(rule, terminal(), tokens.kind(currentToken).ordinal())) {
+                report(ParseTable.ruleName(rule) + ": recovered at " + tokens.value(currentToken));
+                return false;
             }
         }
+        return false;
+    }
+
+    /**
+     * Runs the RULE_* method for a rule id; called by call(rule) once the current token
+     * is in the rule’s FIRST set. Parsers override this with a switch over their rules.
+     */
+    protected void dispatch(int rule) {
+        throw new IllegalArgumentException("No method for rule " + ParseTable.ruleName(rule));
+    }
+
+    /**
+     * ParseTable terminal id of the current token’s value (NONE at EOF), as the lexer
+     * found it.
+     */
+    protected int terminal() {
+        return tokens.has(currentToken) ? tokens.terminal(currentToken) : ParseTable.NONE;
     }
 
     /**
      * Safe peek of current token’s value; returns empty string if at EOF.
      */
     protected String peekValue() {
-        if (currentToken < tokens.size()) {
-            return tokens.get(currentToken).getValue();
+        if (tokens.has(currentToken)) {
+            return tokens.value(currentToken);
         }
         return "";
     }
 
+    /**
+     * True if the current token’s value is exactly v; false at EOF. Unlike
+     * peekValue().equals(v) this does not build the value.
+     */
+    protected boolean peekIs(String v) {
+        return tokens.has(currentToken) && tokens.valueEquals(currentToken, v);
+    }
+
     /**
      * Safe peek of current token’s type; returns empty string if at EOF.
      */
     protected String peekType() {
-        if (currentToken < tokens.size()) {
-            return tokens.get(currentToken).getType();
+        if (tokens.has(currentToken)) {
+            return tokens.kind(currentToken).name();
         }
         return "";
     }
+
+    /**
+     * Safe peek of current token’s kind; returns null if at EOF.
+     */
+    protected TokenKind peekKind() {
+        if (tokens.has(currentToken)) {
+            return tokens.kind(currentToken);
+        }
+        return null;
+    }
 }
@@ -1,23 +1,93 @@
+import java.io.PrintStream;
 import java.util.*;
 /**
  * SemanticAnalizer performs:
  *  1) Scoping & “no shadowing” checks (checkVariable/lookupVariable).
  *  2) Type checking for expressions via a typeStack + a typeCube.
- *  3) Method registration (registerMethod) + signature lookup (findMethod).
+ *  3) Method registration (registerMethod) + signature lookup (findMethod), with
+ *     overloads told apart by arity and parameter types (resolveMethod).
  */
 public class SemanticAnalizer {
     private int errorCount;
+    private ParseListener listener = ParseListener.NONE;
+    // Where errors are printed; null means System.err
+    private PrintStream err;
 
     // Step 1: scoping
-    //   Maps each identifier → Vector of SymbolTableItem entries (could be multiple overloads).
-    private Hashtable<String, Vector<SymbolTableItem>> symbolTable;
-    private Stack<String> scopeStack;
+    //   Identifiers are ids among these names, usually those of the tokens being parsed.
+    private Identifiers identifiers;
+    //   Maps each identifier → its SymbolTableItem entries (could be multiple overloads),
+    //   in the order they were declared.
+    private final IntMap<List<SymbolTableItem>> symbolTable = new IntMap<>();
+    //   The scope tree: scopes are ids 0, 1, 2... in the order they are first entered,
+    //   and each has a kind (a SCOPE_ constant), a name and a position that tell it from
+    //   the others (see scope), and a parent, the scope it was first entered in (-1 for
+    //   the global one). A scope outlives its block: entered again, e.g. by an overload
+    //   of the same method, it is the same scope and sees what it declared before.
+    private int[] scopeKind = new int[16];
+    private int[] scopeName = new int[16];
+    private int[] scopeAt = new int[16];
+    private int[] scopeParent = new int[16];
+    //   Each scope's level in scopeStack while it is entered, -1 otherwise
+    private int[] scopeLevel = new int[16];
+    //   Each scope's declarations, null while it has none
+    private Scope[] frames = new Scope[16];
+    private int scopeCount;
+    //   Scope id + 1 in each slot, 0 if the slot is free, by kind, name and position
+    private int[] scopeTable = new int[32];
+    //   The scopes entered, innermost last
+    private int[] scopeStack = new int[16];
+    private int depth;
+    //   Maps each identifier → its declarations in the scopes entered, innermost first
+    private final IntMap<Binding> bound = new IntMap<>();
 
-    // Step 2: type checking
-    private String[][][] typeCube;
-    private Stack<String> typeStack;
+    // Every declaration in order, so that another analyzer can replay them (see replay)
+    private int[] declaredIds = new int[64];
+    private final List<SymbolTableItem> declaredItems = new ArrayList<>();
+
+    // For a method body parsed on its own: the class-level analyzer, read only, of which
+    // only the first `visible` declarations are seen, as they were when the body began
+    private SemanticAnalizer globals;
+    private int visible;
+
+    // Step 2: type checking; the cube never changes, so all analyzers share it.
+    //   Types and operators are the TYPE_ and OP_ constants below; the type of
+    //   left op right is TYPE_CUBE[op * 81 + left * 9 + right], TYPE_ERROR if invalid.
+    private static final byte[] TYPE_CUBE;
+    //   The types of the expressions parsed, as type codes (see typeCode)
+    private int[] typeStack = new int[16];
+    private int typeCount;
     private static final int TYPES = 9;      // int, float, boolean, char, string, binary, octal, hexadecimal, void
-    private static final int OPERATORS = 15; // +, -, *, /, %, =, &&, <, >, <=, >=, ==, !=, !
+    private static final int OPERATORS = 15; // +, -, *, /, %, =, &&, ||, <, >, <=, >=, ==, !=, !
+
+    // Step 3: methods
+    //   Each name's methods, by arity (see Overloads)
+    private final IntMap<Overloads> methods = new IntMap<>();
+    private int methodCount;
+    //   The method each call shape, a name and argument types, resolved to, keyed by
+    //   a hash of the shape; an entry holds while no method is declared after it, and
+    //   until setGlobals
+    private final IntMap<CallShape> resolved = new IntMap<>();
+
+    // Kinds of scopes
+    public static final int SCOPE_GLOBAL   = 0;
+    public static final int SCOPE_FUNCTION = 1;  // around every method body
+    public static final int SCOPE_METHOD   = 2;  // a method body, by method name and return type
+    public static final int SCOPE_IF       = 3;
+    public static final int SCOPE_ELSE     = 4;
+    public static final int SCOPE_WHILE    = 5;
+    public static final int SCOPE_DO_WHILE = 6;
+    public static final int SCOPE_FOR      = 7;
+    public static final int SCOPE_FOR_INIT = 8;
+    public static final int SCOPE_CASE     = 9;
+    public static final int SCOPE_DEFAULT  = 10;
+    public static final int SCOPE_NAMED    = 11; // any other, by its whole name
+
+    // Names of the global and function scopes, and of the others before "@", by kind
+    private static final String[] SCOPE_PREFIXES = {
+            "global", "function", null, "if", "else", "while", "doWhile", "for", "forInit",
+            "case", "default", null
+    };
 
     // Constants for types
     public static final int TYPE_INT         = 0;
@@ -29,6 +99,11 @@ public class SemanticAnalizer {
     public static final int TYPE_OCTAL       = 6;
     public static final int TYPE_HEXADECIMAL = 7;
     public static final int TYPE_VOID        = 8;
+    public static final int TYPE_ERROR       = -1;
+
+    private static final String[] TYPE_NAMES = {
+            "int", "float", "boolean", "char", "string", "binary", "octal", "hexadecimal", "void"
+    };
 
     // Constants for operators
     public static final int OP_PLUS       = 0;
@@ -48,12 +123,64 @@ public class SemanticAnalizer {
     public static final int OP_NOT        = 14;
 
     public SemanticAnalizer() {
-        this.symbolTable = new Hashtable<>();
-        this.scopeStack  = new Stack<>();
+        this(new Identifiers());
+    }
+
+    /**
+     * An analyzer whose identifier ids are those of identifiers, e.g. the ones of the
+     * tokens being parsed (see TokenSource.identifiers).
+     */
+    public SemanticAnalizer(Identifiers identifiers) {
+        this.identifiers = identifiers;
         this.errorCount  = 0;
-        scopeStack.push("global");
-        this.typeStack   = new Stack<>();
-        InitTypeCube();
+        enterScope(SCOPE_GLOBAL, 0);
+    }
+
+    /**
+     * Forgets every declaration, scope, pushed type and error, ready for another parse;
+     * the listener and error stream are kept.
+     */
+    public void reset() {
+        symbolTable.clear();
+        Arrays.fill(frames, 0, scopeCount, null);
+        Arrays.fill(scopeTable, 0);
+        scopeCount = 0;
+        depth = 0;
+        bound.clear();
+        enterScope(SCOPE_GLOBAL, 0);
+        typeCount = 0;
+        methods.clear();
+        methodCount = 0;
+        resolved.clear();
+        errorCount = 0;
+        declaredItems.clear();
+        globals = null;
+        visible = 0;
+    }
+
+    /**
+     * Use the ids of identifiers from now on, e.g. after reset() for other tokens.
+     */
+    public void setIdentifiers(Identifiers identifiers) {
+        this.identifiers = identifiers;
+    }
+
+    public Identifiers getIdentifiers() {
+        return identifiers;
+    }
+
+    /**
+     * Send "variable added" and error events to listener.
+     */
+    public void setListener(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Print errors to err instead of System.err; null goes back to System.err.
+     */
+    public void setErrorStream(PrintStream err) {
+        this.err = err;
     }
 
     public int getErrorCount() {
@@ -61,19 +188,86 @@ public class SemanticAnalizer {
     }
 
     public String currentScope() {
-        return scopeStack.peek();
+        return scopeName(currentScopeId());
+    }
+
+    /** The id of the innermost scope entered. */
+    public int currentScopeId() {
+        return scopeStack[depth - 1];
     }
 
+    /**
+     * The name of a scope, e.g. "global", "m@int" or "if@12", for messages and
+     * printSymbolTable.
+     */
+    public String scopeName(int scope) {
+        int kind = scopeKind[scope];
+        return switch (kind) {
+            case SCOPE_GLOBAL, SCOPE_FUNCTION -> SCOPE_PREFIXES[kind];
+            case SCOPE_METHOD -> identifiers.name(scopeName[scope]) + "@" + typeName(scopeAt[scope]);
+            case SCOPE_NAMED  -> identifiers.name(scopeName[scope]);
+            default           -> SCOPE_PREFIXES[kind] + "@" + scopeAt[scope];
+        };
+    }
+
+    /** The scope that scope was first entered in; -1 for the global scope. */
+    public int parentScope(int scope) {
+        return scopeParent[scope];
+    }
+
+    /**
+     * Enters the scope named scopeName, as scopeName(int) names it: "m@int" is the scope
+     * of enterMethodScope for a method m returning int, "if@12" that of
+     * enterScope(SCOPE_IF, 12), and so on.
+     */
     public void enterScope(String scopeName) {
-        scopeStack.push(scopeName);
+        enter(scopeOf(scopeName));
+    }
+
+    /**
+     * Enters the scope of a block of some kind (a SCOPE_ constant) whose contents start
+     * at token at; there is one global and one function scope, whatever at is.
+     */
+    public void enterScope(int kind, int at) {
+        enter(scope(kind, -1, kind <= SCOPE_FUNCTION ? 0 : at, currentParent()));
+    }
+
+    /**
+     * Enters the scope of the body of a method, whose name's id is name.
+     */
+    public void enterMethodScope(int name, String returnType) {
+        enter(scope(SCOPE_METHOD, name, typeCode(returnType), currentParent()));
     }
 
     public void exitScope() {
-        if (scopeStack.size() > 1) {
-            scopeStack.pop();
+        if (depth > 1) {
+            int scope = scopeStack[--depth];
+            scopeLevel[scope] = -1;
+            Scope frame = frames[scope];
+            for (int i = frame != null ? frame.items.size() - 1 : -1; i >= 0; i--) {
+                int id = frame.ids[i];
+                bound.put(id, bound.get(id).below);
+            }
         }
     }
 
+    private void enter(int scope) {
+        if (depth == scopeStack.length) {
+            scopeStack = Arrays.copyOf(scopeStack, depth * 2);
+        }
+        scopeLevel[scope] = depth;
+        scopeStack[depth++] = scope;
+        // What the scope declared when entered before is visible again
+        Scope frame = frames[scope];
+        for (int i = 0; frame != null && i < frame.items.size(); i++) {
+            bind(frame.ids[i], frame.items.get(i), depth - 1);
+        }
+    }
+
+    private int currentParent() {
+        return depth > 0 ? scopeStack[depth - 1] : -1;
+    }
+
     /**
      * Called at declaration sites for variables.
      * If 'id' already exists in the same scope → error.
@@ -81,19 +275,23 @@ public class SemanticAnalizer {
      * Otherwise insert (id → SymbolTableItem(type, currentScope(), value)) into symbolTable.
      */
     public void checkVariable(String id, String type, String value) {
+        checkVariable(identifiers.intern(id), type, value);
+    }
+
+    /**
+     * checkVariable for the name whose id is id.
+     */
+    public void checkVariable(int id, String type, String value) {
         // A. Search the id in the symbol table in current scope
         if (existsInCurrentScope(id, type)) {
-            reportError("Variable '" + id + "' already exists in scope '" + currentScope() + "'");
+            reportError("Variable '" + identifiers.name(id) + "' already exists in scope '" + currentScope() + "'");
         } else {
             // B. If not exist, check parent scopes for same name+type
-            List<String> scopes = new ArrayList<>(scopeStack);
-            for (int i = scopes.size() - 2; i >= 0; i--) {
-                if (existsInSelectedScope(scopes.get(i), id, type)) {
-                    reportError("Variable '" + id + "' already exists in parent scope '"
-                            + scopes.get(i) + "'. Cannot redeclare in nested scope '"
-                            + currentScope() + "'");
-                    break;
-                }
+            Binding parent = variable(id, type, depth - 2);
+            if (parent != null) {
+                reportError("Variable '" + identifiers.name(id) + "' already exists in parent scope '"
+                        + scopeName(scopeStack[parent.level]) + "'. Cannot redeclare in nested scope '"
+                        + currentScope() + "'");
             }
 
             // If no initial value provided, assign a language‐default
@@ -101,47 +299,38 @@ public class SemanticAnalizer {
                 value = getDefaultValue(type);
             }
 
-            SymbolTableItem symbol = new SymbolTableItem(type, currentScope(), value);
-            if (symbolTable.containsKey(id)) {
-                symbolTable.get(id).add(symbol);
-            } else {
-                Vector<SymbolTableItem> v = new Vector<>();
-                v.add(symbol);
-                symbolTable.put(id, v);
-            }
+            declare(id, new SymbolTableItem(type, currentScopeId(), value));
 
-            System.out.println("Added variable: " + id
-                    + " of type " + type
-                    + " in scope " + currentScope()
-                    + " with value " + value);
+            if (listener != ParseListener.NONE) {
+                listener.variable(identifiers.name(id), type, currentScope(), value);
+            }
         }
     }
 
     /** Returns true if (id,type) exists exactly in currentScope(). */
-    private boolean existsInCurrentScope(String id, String type) {
-        if (!symbolTable.containsKey(id)) {
-            return false;
-        }
-        for (SymbolTableItem symbol : symbolTable.get(id)) {
-            if (symbol.getScope().equals(currentScope()) && symbol.getType().equals(type)
-                    && !symbol.isMethod()) {
-                return true;
-            }
-        }
-        return false;
+    private boolean existsInCurrentScope(int id, String type) {
+        Binding b = variable(id, type, depth - 1);
+        return b != null && b.level == depth - 1;
     }
 
-    /** Returns true if (id,type) exists in the given 'scope'. */
-    private boolean existsInSelectedScope(String scope, String id, String type) {
-        if (!symbolTable.containsKey(id)) {
-            return false;
+    /**
+     * The innermost variable id of the given type declared in scope `from` of the
+     * stack or in one around it; null if there is none.
+     */
+    private Binding variable(int id, String type, int from) {
+        for (Binding b = bound.get(id); b != null; b = b.below) {
+            if (b.level <= from && !b.item.isMethod() && b.item.getType().equals(type)) {
+                return b;
+            }
         }
-        for (SymbolTableItem symbol : symbolTable.get(id)) {
-            if (symbol.getScope().equals(scope) && symbol.getType().equals(type) && !symbol.isMethod()) {
-                return true;
+        if (globals != null && from >= 0) {
+            for (Binding b = globals.bound.get(id); b != null; b = b.below) {
+                if (isShared(b) && !b.item.isMethod() && b.item.getType().equals(type)) {
+                    return b;
+                }
             }
         }
-        return false;
+        return null;
     }
 
     private String getDefaultValue(String type) {
@@ -158,10 +347,15 @@ public class SemanticAnalizer {
     /** Print all entries in the symbol table (for debugging). */
     public void printSymbolTable() {
         System.out.println("\n=== SYMBOL TABLE ===");
-        for (String id : symbolTable.keySet()) {
-            for (SymbolTableItem item : symbolTable.get(id)) {
+        // Each name's entries, in the order of the names' first declarations
+        for (int i = 0; i < declaredItems.size(); i++) {
+            List<SymbolTableItem> items = symbolTable.get(declaredIds[i]);
+            if (items.get(0) != declaredItems.get(i)) {
+                continue;
+            }
+            for (SymbolTableItem item : items) {
                 System.out.printf("Name: %s,\tType: %s,\tScope: %s,\tValue: %s%s\n",
-                        id, item.getType(), item.getScope(),
+                        identifiers.name(declaredIds[i]), item.getType(), scopeName(item.getScope()),
                         item.getValue(),
                         item.isMethod() ? ", METHOD" : "");
                 if (item.isMethod()) {
@@ -180,15 +374,21 @@ public class SemanticAnalizer {
      * Returns true if 'id' is declared in any enclosing scope; false otherwise.
      */
     public boolean lookupVariable(String id) {
-        if (!symbolTable.containsKey(id)) {
-            return false;
+        int key = identifiers.find(id);
+        return key >= 0 && lookupVariable(key);
+    }
+
+    /**
+     * lookupVariable for the name whose id is id.
+     */
+    public boolean lookupVariable(int id) {
+        // Any SymbolTableItem (variable or method) in an enclosing scope will do
+        if (bound.get(id) != null) {
+            return true;
         }
-        List<String> scopes = new ArrayList<>(scopeStack);
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            String s = scopes.get(i);
-            for (SymbolTableItem item : symbolTable.get(id)) {
-                // If there is any SymbolTableItem (variable or method) in that scope, return true
-                if (item.getScope().equals(s)) {
+        if (globals != null) {
+            for (Binding b = globals.bound.get(id); b != null; b = b.below) {
+                if (isShared(b)) {
                     return true;
                 }
             }
@@ -201,20 +401,37 @@ public class SemanticAnalizer {
      * If 'id' is not found, returns null.
      */
     public String getDeclaredType(String id) {
-        if (!symbolTable.containsKey(id)) {
-            return null;
+        int key = identifiers.find(id);
+        return key >= 0 ? getDeclaredType(key) : null;
+    }
+
+    /**
+     * getDeclaredType for the name whose id is id.
+     */
+    public String getDeclaredType(int id) {
+        // Of the variables in the innermost scope that has one, the first declared
+        Binding found = null;
+        for (Binding b = bound.get(id); b != null; b = b.below) {
+            if (found != null && b.level != found.level) {
+                break;
+            }
+            if (!b.item.isMethod()) {
+                found = b;
+            }
         }
-        List<String> scopes = new ArrayList<>(scopeStack);
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            String s = scopes.get(i);
-            for (SymbolTableItem item : symbolTable.get(id)) {
-                if (item.getScope().equals(s) && !item.isMethod()) {
-                    // If it’s a variable entry, return its type.
-                    return item.getType();
+        if (globals != null && (found == null || found.level == 0)) {
+            // The class-level variables come before this analyzer's own global ones
+            Binding shared = null;
+            for (Binding b = globals.bound.get(id); b != null; b = b.below) {
+                if (isShared(b) && !b.item.isMethod()) {
+                    shared = b;
                 }
             }
+            if (shared != null) {
+                found = shared;
+            }
         }
-        return null;
+        return found != null ? found.item.getType() : null;
     }
 
     /**
@@ -231,11 +448,18 @@ public class SemanticAnalizer {
      * If no type was pushed, returns a default (“int”) to avoid NPEs.
      */
     public String getLastExpressionType() {
-        if (!typeStack.isEmpty()) {
-            return typeStack.pop();
+        return typeName(popExpressionType());
+    }
+
+    /**
+     * getLastExpressionType as a type code (see typeCode).
+     */
+    public int popExpressionType() {
+        if (typeCount > 0) {
+            return typeStack[--typeCount];
         }
         // Fallback if parser hasn’t computed a type: assume “int”
-        return "int";
+        return TYPE_INT;
     }
 
     /**
@@ -243,7 +467,76 @@ public class SemanticAnalizer {
      * (e.g. semanticAnalizer.pushExpressionType("boolean");)
      */
     public void pushExpressionType(String type) {
-        typeStack.push(type);
+        pushExpressionType(typeCode(type));
+    }
+
+    /**
+     * pushExpressionType for a type code (see typeCode).
+     */
+    public void pushExpressionType(int type) {
+        if (typeCount == typeStack.length) {
+            typeStack = Arrays.copyOf(typeStack, typeCount * 2);
+        }
+        typeStack[typeCount++] = type;
+    }
+
+    /**
+     * Pops the operand types of operator (one of the OP_ constants), the right one on
+     * top, and pushes the type of the result, TYPE_ERROR if the operator does not apply
+     * to them. A unary operator pops one type only.
+     * E.g. after pushing "int" and "float", reduceExpressionType(OP_LESS) leaves "boolean".
+     */
+    public int reduceExpressionType(int operator) {
+        int right = popExpressionType();
+        int left = operator == OP_NOT ? TYPE_VOID : popExpressionType();
+        int result = resultType(operator, left, right);
+        pushExpressionType(result);
+        return result;
+    }
+
+    /**
+     * The type of left operator right, for TYPE_ and OP_ constants, as in the tables of
+     * the README; TYPE_ERROR if the operator does not apply to them. For '=', it is
+     * left's type if right can be assigned to it. For the unary '!', left is TYPE_VOID.
+     */
+    public static int resultType(int operator, int left, int right) {
+        if (operator < 0 || operator >= OPERATORS || left < 0 || left >= TYPES
+                || right < 0 || right >= TYPES) {
+            return TYPE_ERROR;
+        }
+        return TYPE_CUBE[operator * TYPES * TYPES + left * TYPES + right];
+    }
+
+    /**
+     * The code of a type name: one of the TYPE_ constants, or for another name (in input
+     * with errors) TYPES plus its id among the identifiers, so that typeName turns it
+     * back into the name as it was written.
+     */
+    public int typeCode(String type) {
+        int code = typeIndexOf(type);
+        if (code == TYPE_ERROR && !type.equals("ERROR")) {
+            code = TYPES + identifiers.intern(type);
+        }
+        return code;
+    }
+
+    /**
+     * The name of a type code (see typeCode); "ERROR" for TYPE_ERROR.
+     */
+    public String typeName(int type) {
+        if (type == TYPE_ERROR) {
+            return "ERROR";
+        }
+        return type < TYPES ? TYPE_NAMES[type] : identifiers.name(type - TYPES);
+    }
+
+    /**
+     * Drops the types left on the stack, e.g. by assignments, which push a type that
+     * nothing pops. The parser calls it as each method body starts, so that a body does
+     * not see the types left by the ones before it.
+     */
+    public void clearExpressionTypes() {
+        typeCount = 0;
     }
 
     // ----------------------------------------------------------------
@@ -258,17 +551,15 @@ public class SemanticAnalizer {
      * @param paramTypes a List<String> of parameter types in order (e.g. ["int","boolean","String"])
      */
     public void registerMethod(String methodName, String returnType, List<String> paramTypes) {
-        // Because we already did enterScope("function"), currentScope() is "function".
-        String methodScope = currentScope();
-        SymbolTableItem methodEntry = new SymbolTableItem(returnType, methodScope, paramTypes);
+        registerMethod(identifiers.intern(methodName), returnType, paramTypes);
+    }
 
-        if (symbolTable.containsKey(methodName)) {
-            symbolTable.get(methodName).add(methodEntry);
-        } else {
-            Vector<SymbolTableItem> v = new Vector<>();
-            v.add(methodEntry);
-            symbolTable.put(methodName, v);
-        }
+    /**
+     * registerMethod for the name whose id is methodName.
+     */
+    public void registerMethod(int methodName, String returnType, List<String> paramTypes) {
+        // Declared in the current scope, the class's, before the method's own is entered
+        declare(methodName, new SymbolTableItem(returnType, currentScopeId(), paramTypes));
     }
 
 
@@ -277,7 +568,7 @@ public class SemanticAnalizer {
      * Used by the parser to track how many types were pushed during argument parsing.
      */
     public int expressionStackSize() {
-        return typeStack.size();
+        return typeCount;
     }
 
     /**
@@ -285,10 +576,19 @@ public class SemanticAnalizer {
      * Returns null if no such method entry exists.
      */
     public SymbolTableItem findMethod(String id) {
-        if (!symbolTable.containsKey(id)) {
+        int key = identifiers.find(id);
+        return key >= 0 ? findMethod(key) : null;
+    }
+
+    /**
+     * findMethod for the name whose id is id.
+     */
+    public SymbolTableItem findMethod(int id) {
+        List<SymbolTableItem> items = items(id);
+        if (items == null) {
             return null;
         }
-        for (SymbolTableItem item : symbolTable.get(id)) {
+        for (SymbolTableItem item : items) {
             if (item.isMethod()) {
                 return item;
             }
@@ -296,79 +596,576 @@ public class SemanticAnalizer {
         return null;
     }
 
+    /**
+     * The method that a call of the name whose id is id, with arguments of types
+     * argTypes (type codes, see typeCode), calls: of its overloads with as many
+     * parameters as there are arguments, the one whose parameter types are argTypes,
+     * or else the one with the most parameters of the type of their argument, the first
+     * declared if several. If none has as many parameters, the first method declared,
+     * as findMethod; null if id names no method.
+     * Resolutions are cached by call shape, so that calls alike cost one lookup.
+     */
+    public SymbolTableItem resolveMethod(int id, int[] argTypes) {
+        int hash = signatureHash(argTypes);
+        int key = (31 * hash + id) & Integer.MAX_VALUE;
+        CallShape stale = null;
+        for (CallShape shape = resolved.get(key); shape != null; shape = shape.next) {
+            if (shape.name == id && Arrays.equals(shape.types, argTypes)) {
+                if (shape.methodCount == methodCount) {
+                    return shape.method;
+                }
+                stale = shape;
+            }
+        }
+        SymbolTableItem method = resolve(id, argTypes, hash);
+        if (stale == null) {
+            stale = new CallShape(id, argTypes.clone(), resolved.get(key));
+            resolved.put(key, stale);
+        }
+        stale.method = method;
+        stale.methodCount = methodCount;
+        return method;
+    }
+
+    private SymbolTableItem resolve(int id, int[] argTypes, int hash) {
+        Signature best = null;
+        int bestMatches = -1;
+        // The visible class-level overloads first, as in items
+        Overloads shared = globals != null ? globals.methods.get(id) : null;
+        for (Signature s = shared != null ? shared.withArity(argTypes.length) : null;
+                s != null && s.item.getDeclaredAt() < visible; s = s.next) {
+            if (s.hash == hash && Arrays.equals(s.types, argTypes)) {
+                return s.item;
+            }
+            int matches = s.matches(argTypes);
+            if (matches > bestMatches) {
+                best = s;
+                bestMatches = matches;
+            }
+        }
+        Overloads own = methods.get(id);
+        for (Signature s = own != null ? own.withArity(argTypes.length) : null; s != null; s = s.next) {
+            if (s.hash == hash && Arrays.equals(s.types, argTypes)) {
+                return s.item;
+            }
+            int matches = s.matches(argTypes);
+            if (matches > bestMatches) {
+                best = s;
+                bestMatches = matches;
+            }
+        }
+        return best != null ? best.item : findMethod(id);
+    }
+
+    private static int signatureHash(int[] types) {
+        int h = types.length;
+        for (int type : types) {
+            h = 31 * h + type;
+        }
+        return h;
+    }
+
+    // ----------------------------------------------------------------
+    // DECLARATIONS, in order (used by TheParser's parallel parse)
+    // ----------------------------------------------------------------
+
+    private void declare(int id, SymbolTableItem item) {
+        int at = declaredItems.size();
+        item.setDeclaredAt(at);
+        if (at == declaredIds.length) {
+            declaredIds = Arrays.copyOf(declaredIds, at * 2);
+        }
+        declaredIds[at] = id;
+        declaredItems.add(item);
+        List<SymbolTableItem> v = symbolTable.get(id);
+        if (v == null) {
+            v = new ArrayList<>();
+            symbolTable.put(id, v);
+        }
+        v.add(item);
+        if (item.isMethod()) {
+            index(id, item);
+        }
+
+        int scope = item.getScope();
+        if (frames[scope] == null) {
+            frames[scope] = new Scope();
+        }
+        frames[scope].add(id, item);
+        if (scopeLevel[scope] >= 0) {
+            bind(id, item, scopeLevel[scope]);
+        }
+    }
+
+    /** Adds method item to the overloads of id. */
+    private void index(int id, SymbolTableItem item) {
+        List<String> params = item.getParamTypes();
+        int[] types = new int[params.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeCode(params.get(i));
+        }
+        Overloads overloads = methods.get(id);
+        if (overloads == null) {
+            overloads = new Overloads();
+            methods.put(id, overloads);
+        }
+        overloads.add(new Signature(item, types, signatureHash(types)));
+        methodCount++;
+    }
+
+    /**
+     * The scope of a kind with a name and position, e.g. SCOPE_METHOD, the method name's
+     * id and its return type's code, or SCOPE_IF, -1 and the token its block starts at;
+     * new, in parent, if there is none yet.
+     */
+    private int scope(int kind, int name, int at, int parent) {
+        int mask = scopeTable.length - 1;
+        int slot = scopeHash(kind, name, at) & mask;
+        for (int s = scopeTable[slot] - 1; s >= 0; s = scopeTable[slot] - 1) {
+            if (scopeKind[s] == kind && scopeName[s] == name && scopeAt[s] == at) {
+                return s;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int s = scopeCount++;
+        if (s == scopeKind.length) {
+            scopeKind = Arrays.copyOf(scopeKind, s * 2);
+            scopeName = Arrays.copyOf(scopeName, s * 2);
+            scopeAt = Arrays.copyOf(scopeAt, s * 2);
+            scopeParent = Arrays.copyOf(scopeParent, s * 2);
+            scopeLevel = Arrays.copyOf(scopeLevel, s * 2);
+            frames = Arrays.copyOf(frames, s * 2);
+        }
+        scopeKind[s] = kind;
+        scopeName[s] = name;
+        scopeAt[s] = at;
+        scopeParent[s] = parent;
+        scopeLevel[s] = -1;
+        scopeTable[slot] = s + 1;
+        if (scopeCount * 2 > scopeTable.length) {
+            int[] grown = new int[scopeTable.length * 2];
+            mask = grown.length - 1;
+            for (int i = 0; i < scopeCount; i++) {
+                slot = scopeHash(scopeKind[i], scopeName[i], scopeAt[i]) & mask;
+                while (grown[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                grown[slot] = i + 1;
+            }
+            scopeTable = grown;
+        }
+        return s;
+    }
+
+    private static int scopeHash(int kind, int name, int at) {
+        int h = ((kind * 31 + name) * 31 + at) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The scope that scopeName(int) names name; new, in the current scope, if there is
+     * none yet.
+     */
+    private int scopeOf(String name) {
+        int parent = currentParent();
+        if (name.equals(SCOPE_PREFIXES[SCOPE_GLOBAL])) {
+            return scope(SCOPE_GLOBAL, -1, 0, parent);
+        }
+        if (name.equals(SCOPE_PREFIXES[SCOPE_FUNCTION])) {
+            return scope(SCOPE_FUNCTION, -1, 0, parent);
+        }
+        int at = name.lastIndexOf('@');
+        if (at > 0) {
+            String prefix = name.substring(0, at);
+            String suffix = name.substring(at + 1);
+            for (int kind = SCOPE_IF; kind <= SCOPE_DEFAULT; kind++) {
+                if (prefix.equals(SCOPE_PREFIXES[kind]) && isPosition(suffix)) {
+                    return scope(kind, -1, Integer.parseInt(suffix), parent);
+                }
+            }
+            return scope(SCOPE_METHOD, identifiers.intern(prefix), typeCode(suffix), parent);
+        }
+        return scope(SCOPE_NAMED, identifiers.intern(name), 0, parent);
+    }
+
+    // Whether s is a token index as scopeName(int) writes it
+    private static boolean isPosition(String s) {
+        if (s.isEmpty() || s.length() > 9 || s.length() > 1 && s.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes item visible as id from the scope at level of the stack inwards, above the
+     * declarations of id in the scopes around it.
+     */
+    private void bind(int id, SymbolTableItem item, int level) {
+        Binding top = bound.get(id);
+        if (top == null || top.level <= level) {
+            bound.put(id, new Binding(item, level, top));
+            return;
+        }
+        // Only replay declares in a scope that is not the innermost
+        Binding b = top;
+        while (b.below != null && b.below.level > level) {
+            b = b.below;
+        }
+        b.below = new Binding(item, level, b.below);
+    }
+
+    /**
+     * Whether b, a binding of globals, is one this analyzer sees: a declaration at class
+     * level among the first `visible` ones.
+     */
+    private boolean isShared(Binding b) {
+        return b.level == 0 && b.item.getDeclaredAt() < visible;
+    }
+
+    /**
+     * Entries for id: the visible class-level ones first, if this analyzer has globals,
+     * then its own, in declaration order; null if there are none.
+     */
+    private List<SymbolTableItem> items(int id) {
+        List<SymbolTableItem> own = symbolTable.get(id);
+        if (globals == null) {
+            return own;
+        }
+        List<SymbolTableItem> shared = globals.declaredBefore(id, visible);
+        if (shared == null) {
+            return own;
+        }
+        if (own == null) {
+            return shared;
+        }
+        List<SymbolTableItem> all = new ArrayList<>(shared);
+        all.addAll(own);
+        return all;
+    }
+
+    private List<SymbolTableItem> declaredBefore(int id, int limit) {
+        List<SymbolTableItem> v = symbolTable.get(id);
+        if (v == null) {
+            return null;
+        }
+        int n = 0;
+        while (n < v.size() && v.get(n).getDeclaredAt() < limit) {
+            n++;
+        }
+        return n == 0 ? null : n == v.size() ? v : v.subList(0, n);
+    }
+
+    /** Number of declarations so far. */
+    int declarations() {
+        return declaredItems.size();
+    }
+
+    /**
+     * Makes the first `visible` declarations of globals, which must no longer change,
+     * part of this analyzer's symbol table without copying them, for lookups only: they
+     * are not printed or replayed. Only the class level, scope 0, of globals is seen,
+     * and globals is read by many analyzers at once, so it must not be used meanwhile.
+     */
+    void setGlobals(SemanticAnalizer globals, int visible) {
+        this.globals = globals;
+        this.visible = visible;
+        // Other methods may be visible now
+        resolved.clear();
+    }
+
+    /**
+     * Declares again, in order, declarations from..to-1 of another analyzer with the
+     * same identifiers, together with the errors it counted for them. The items are then
+     * this analyzer's: their scopes are its own scopes of the same kinds and names.
+     */
+    void replay(SemanticAnalizer other, int from, int to, int errors) {
+        for (int i = from; i < to; i++) {
+            SymbolTableItem item = other.declaredItems.get(i);
+            item.setScope(sameScope(other, item.getScope()));
+            declare(other.declaredIds[i], item);
+        }
+        errorCount += errors;
+    }
+
+    // This analyzer's scope for scope of other, with the same parents
+    private int sameScope(SemanticAnalizer other, int scope) {
+        int parent = other.scopeParent[scope];
+        return scope(other.scopeKind[scope], other.scopeName[scope], other.scopeAt[scope],
+                parent >= 0 ? sameScope(other, parent) : -1);
+    }
+
+    // A scope's declarations, in order
+    private static final class Scope {
+        int[] ids = new int[4];
+        final List<SymbolTableItem> items = new ArrayList<>();
+
+        void add(int id, SymbolTableItem item) {
+            if (items.size() == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[items.size()] = id;
+            items.add(item);
+        }
+    }
+
+    // A declaration of an identifier in an entered scope, over the ones it hides
+    private static final class Binding {
+        final SymbolTableItem item;
+        final int level;
+        Binding below;
+
+        Binding(SymbolTableItem item, int level, Binding below) {
+            this.item = item;
+            this.level = level;
+            this.below = below;
+        }
+    }
+
+    // A name's methods, in declaration order, by arity
+    private static final class Overloads {
+        Signature[] byArity = new Signature[4];
+
+        void add(Signature signature) {
+            int arity = signature.types.length;
+            if (arity >= byArity.length) {
+                byArity = Arrays.copyOf(byArity, Math.max(arity + 1, byArity.length * 2));
+            }
+            if (byArity[arity] == null) {
+                byArity[arity] = signature;
+                return;
+            }
+            Signature last = byArity[arity];
+            while (last.next != null) {
+                last = last.next;
+            }
+            last.next = signature;
+        }
+
+        Signature withArity(int arity) {
+            return arity < byArity.length ? byArity[arity] : null;
+        }
+    }
+
+    // A method, its parameter type codes and their signatureHash, before the next
+    // overload with as many parameters
+    private static final class Signature {
+        final SymbolTableItem item;
+        final int[] types;
+        final int hash;
+        Signature next;
+
+        Signature(SymbolTableItem item, int[] types, int hash) {
+            this.item = item;
+            this.types = types;
+            this.hash = hash;
+        }
+
+        // How many arguments have the type of their parameter
+        int matches(int[] argTypes) {
+            int n = 0;
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == argTypes[i]) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    // A name called with arguments of some types, and the method it resolved to while
+    // methodCount methods were declared; next is another shape with the same hash
+    private static final class CallShape {
+        final int name;
+        final int[] types;
+        SymbolTableItem method;
+        int methodCount;
+        final CallShape next;
+
+        CallShape(int name, int[] types, CallShape next) {
+            this.name = name;
+            this.types = types;
+            this.next = next;
+        }
+    }
+
     // ----------------------------------------------------------------
     // PRIVATE helper to report errors
     // ----------------------------------------------------------------
     private void error(String message) {
-        System.err.println("Semantic error: " + message);
+        listener.error(message);
+        (err != null ? err : System.err).println("Semantic error: " + message);
         errorCount++;
     }
 
     // ----------------------------------------------------------------
-    // TYPE‐CUBE INITIALIZATION (unchanged from original)
+    // TYPE‐CUBE INITIALIZATION, from the tables of the README
     // ----------------------------------------------------------------
-    private void InitTypeCube() {
-        typeCube = new String[OPERATORS][TYPES][TYPES];
-        for (int i = 0; i < OPERATORS; i++)
-            for (int j = 0; j < TYPES; j++)
-                for (int k = 0; k < TYPES; k++)
-                    typeCube[i][j][k] = "ERROR";
-
-        // ---------- Addition Operator ----------
-        typeCube[OP_PLUS][TYPE_INT][TYPE_INT]         = "int";
-        typeCube[OP_PLUS][TYPE_INT][TYPE_FLOAT]       = "float";
-        typeCube[OP_PLUS][TYPE_INT][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_INT][TYPE_BINARY]      = "int";
-        typeCube[OP_PLUS][TYPE_INT][TYPE_OCTAL]       = "int";
-        typeCube[OP_PLUS][TYPE_INT][TYPE_HEXADECIMAL] = "int";
-
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_INT]         = "float";
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_FLOAT]       = "float";
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_BINARY]      = "float";
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_OCTAL]       = "float";
-        typeCube[OP_PLUS][TYPE_FLOAT][TYPE_HEXADECIMAL] = "float";
-
-        typeCube[OP_PLUS][TYPE_BOOLEAN][TYPE_STRING] = "string";
-        typeCube[OP_PLUS][TYPE_CHAR][TYPE_STRING]    = "string";
-
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_INT]         = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_FLOAT]       = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_BOOLEAN]     = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_CHAR]        = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_BINARY]      = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_OCTAL]       = "string";
-        typeCube[OP_PLUS][TYPE_STRING][TYPE_HEXADECIMAL] = "string";
-
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_INT]         = "int";
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_FLOAT]       = "float";
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_BINARY]      = "int";
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_OCTAL]       = "int";
-        typeCube[OP_PLUS][TYPE_BINARY][TYPE_HEXADECIMAL] = "int";
-
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_INT]         = "int";
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_FLOAT]       = "float";
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_BINARY]      = "int";
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_OCTAL]       = "int";
-        typeCube[OP_PLUS][TYPE_OCTAL][TYPE_HEXADECIMAL] = "int";
-
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_INT]         = "int";
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_FLOAT]       = "float";
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_STRING]      = "string";
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_BINARY]      = "int";
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_OCTAL]       = "int";
-        typeCube[OP_PLUS][TYPE_HEXADECIMAL][TYPE_HEXADECIMAL] = "int";
-
-        // ... (rest of typeCube initialization identical to your original code) ...
-        // For brevity, I have omitted the full subtraction, multiplication, division, etc.
-        // You can copy‐paste everything from your previous version of InitTypeCube() here.
-    }
-
-    private int typeIndexOf(String type) {
-        return switch (type.toLowerCase()) {
+
+    // The tables of <, >, <= and >=, and of == and !=
+    private static final String[] COMPARISON = {
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "x       x       x       x       x       x       x       x       x",
+        "x       x       x       x       x       x       x       x       x",
+        "x       x       x       x       x       x       x       x       x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "x       x       x       x       x       x       x       x       x",
+    };
+    private static final String[] EQUALITY = {
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "x       x       boolean x       x       x       x       x       x",
+        "x       x       x       boolean x       x       x       x       x",
+        "x       x       x       x       boolean x       x       x       x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "boolean boolean x       x       x       boolean boolean boolean x",
+        "x       x       x       x       x       x       x       x       x",
+    };
+
+    // For each operator, in OP_ order, the type of left op right: a row per left type
+    // and a column per right type, both in TYPE_ order. x is an error; for '=', OK is
+    // the left type. '!' is unary: its operand is the right one, with a void left.
+    private static final String[][] TYPE_TABLES = {
+        { // +
+            "int     float   x       x       string  int     int     int     x",
+            "float   float   x       x       string  float   float   float   x",
+            "x       x       x       x       string  x       x       x       x",
+            "x       x       x       x       string  x       x       x       x",
+            "string  string  string  string  string  string  string  string  x",
+            "int     float   x       x       string  int     int     int     x",
+            "int     float   x       x       string  int     int     int     x",
+            "int     float   x       x       string  int     int     int     x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // -
+            "int     float   x       x       x       int     int     int     x",
+            "float   float   x       x       x       float   float   float   x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "int     float   x       x       x       int     int     int     x",
+            "int     float   x       x       x       int     int     int     x",
+            "int     float   x       x       x       int     int     int     x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // *
+            "int     float   x       x       x       int     int     int     x",
+            "float   float   x       x       x       float   float   float   x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "int     float   x       x       x       int     int     int     x",
+            "int     float   x       x       x       int     int     int     x",
+            "int     float   x       x       x       int     int     int     x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // /
+            "float   float   x       x       x       float   float   float   x",
+            "float   float   x       x       x       float   float   float   x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "float   float   x       x       x       float   float   float   x",
+            "float   float   x       x       x       float   float   float   x",
+            "float   float   x       x       x       float   float   float   x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // %
+            "int     x       x       x       x       int     int     int     x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "int     x       x       x       x       int     int     int     x",
+            "int     x       x       x       x       int     int     int     x",
+            "int     x       x       x       x       int     int     int     x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // =
+            "OK      OK      x       x       x       OK      OK      OK      x",
+            "OK      OK      x       x       x       OK      OK      OK      x",
+            "x       x       OK      x       x       x       x       x       x",
+            "x       x       x       OK      x       x       x       x       x",
+            "x       x       x       x       OK      x       x       x       x",
+            "OK      x       x       x       x       OK      OK      OK      x",
+            "OK      x       x       x       x       OK      OK      OK      x",
+            "OK      x       x       x       x       OK      OK      OK      x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // &&
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       boolean x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        { // ||
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       boolean x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+        },
+        COMPARISON, // <
+        COMPARISON, // >
+        COMPARISON, // <=
+        COMPARISON, // >=
+        EQUALITY,   // ==
+        EQUALITY,   // !=
+        { // !
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       x       x       x       x       x       x       x",
+            "x       x       boolean x       x       x       x       x       x",
+        },
+    };
+
+    static {
+        TYPE_CUBE = initTypeCube();
+    }
+
+    private static byte[] initTypeCube() {
+        byte[] typeCube = new byte[OPERATORS * TYPES * TYPES];
+        for (int op = 0; op < OPERATORS; op++) {
+            for (int left = 0; left < TYPES; left++) {
+                String[] cells = TYPE_TABLES[op][left].trim().split("\\s+");
+                for (int right = 0; right < TYPES; right++) {
+                    int type = switch (cells[right]) {
+                        case "x"  -> TYPE_ERROR;
+                        case "OK" -> left;
+                        default   -> typeIndexOf(cells[right]);
+                    };
+                    typeCube[op * TYPES * TYPES + left * TYPES + right] = (byte) type;
+                }
+            }
+        }
+        return typeCube;
+    }
+
+    // TYPE_ERROR for a name that is not a type's
+    private static int typeIndexOf(String type) {
+        return switch (type) {
             case "int"         -> TYPE_INT;
             case "float"       -> TYPE_FLOAT;
             case "boolean"     -> TYPE_BOOLEAN;
@@ -378,11 +1175,14 @@ public class SemanticAnalizer {
             case "octal"       -> TYPE_OCTAL;
             case "hexadecimal" -> TYPE_HEXADECIMAL;
             case "void"        -> TYPE_VOID;
-            default             -> -1;
+            default            -> TYPE_ERROR;
         };
     }
 
-    private int operatorIndexOf(String operator) {
+    /**
+     * The OP_ constant of an operator token, e.g. "<=", or -1.
+     */
+    public static int operatorIndexOf(String operator) {
         return switch (operator) {
             case "+"  -> OP_PLUS;
             case "-"  -> OP_MINUS;
@@ -0,0 +1,807 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * TheParser's grammar, semantic checks, events and tree, parsed without recursion:
+ * every rule is a state machine whose frames live on an explicit stack of int arrays,
+ * so nesting of blocks, if/else chains or parentheses as deep as the input holds costs
+ * a few ints per level of heap instead of Java stack frames, and cannot overflow the
+ * thread's stack. The output is the same as TheParser's.
+ * Only TYPE and PARAMS, which have no nested rules, still run as TheParser's methods.
+ * Method bodies are always parsed sequentially.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class StackParser extends TheParser {
+
+    // Frame kinds besides the ParseTable rule ids: expression(minPrecedence) and atom()
+    private static final int OPERAND = ParseTable.ruleCount();
+    private static final int ATOM = OPERAND + 1;
+
+    // The frames: rule, state (where to resume) and the rule's locals
+    private int[] rule = new int[64];
+    private int[] state = new int[64];
+    private int[] a = new int[64];
+    private int[] b = new int[64];
+    private int[] c = new int[64];
+    private int[] d = new int[64];
+    private int depth;
+    private int maxDepth;
+
+    public StackParser(TokenSource tokens) {
+        super(tokens);
+    }
+
+    @Override
+    public int run() {
+        if (tree != null) tree.reset(tokens);
+        parseSequentially();
+        return finish();
+    }
+
+    /**
+     * Same as run(): this engine does not parse bodies in parallel. In two-phase mode
+     * (see setTwoPhase) its first pass is sequential too.
+     */
+    @Override
+    public int run(ForkJoinPool pool) {
+        return run();
+    }
+
+    /**
+     * The most frames that were on the stack at once during the last run, which is the
+     * deepest nesting the input reached.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    protected void parseProgram() {
+        parse();
+    }
+
+    @Override
+    protected TheParser newParser(TokenSource tokens) {
+        return new StackParser(tokens);
+    }
+
+    private void parse() {
+        depth = 0;
+        maxDepth = 0;
+        push(ParseTable.PROGRAM);
+        while (depth > 0) {
+            int f = depth - 1;
+            switch (rule[f]) {
+                case ParseTable.PROGRAM      -> program(f);
+                case ParseTable.METHOD       -> method(f);
+                case ParseTable.BODY         -> body(f);
+                case ParseTable.VARIABLE     -> variable(f);
+                case ParseTable.ASSIGNMENT   -> assignment(f);
+                case ParseTable.CALL_METHOD  -> callMethod(f);
+                case ParseTable.RETURN       -> returnStatement(f);
+                case ParseTable.PRINT        -> print(f);
+                case ParseTable.IF           -> ifStatement(f);
+                case ParseTable.WHILE        -> whileStatement(f);
+                case ParseTable.DO_WHILE     -> doWhile(f);
+                case ParseTable.FOR          -> forStatement(f);
+                case ParseTable.SWITCH       -> switchStatement(f);
+                case ParseTable.PARAM_VALUES -> paramValues(f);
+                case ParseTable.EXPRESSION   -> expression(f);
+                default -> {
+                    if (rule[f] == OPERAND) operand(f);
+                    else if (rule[f] == ATOM) atom(f);
+                    else throw new IllegalStateException("No frame for rule " + rule[f]);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Frames
+    // ------------------------------------------------------------
+
+    private int push(int r) {
+        if (depth == rule.length) grow();
+        int f = depth++;
+        rule[f] = r;
+        state[f] = 0;
+        maxDepth = Math.max(maxDepth, depth);
+        return f;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    private void grow() {
+        int capacity = rule.length * 2;
+        rule = Arrays.copyOf(rule, capacity);
+        state = Arrays.copyOf(state, capacity);
+        a = Arrays.copyOf(a, capacity);
+        b = Arrays.copyOf(b, capacity);
+        c = Arrays.copyOf(c, capacity);
+        d = Arrays.copyOf(d, capacity);
+    }
+
+    /**
+     * call(r) for frame f: f resumes at state next, and r runs first if the current
+     * token (after skipping, as call does) starts it. True if r was pushed.
+     */
+    private boolean call(int f, int r, int next) {
+        state[f] = next;
+        if (atFirst(r)) {
+            push(r);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs expression(minPrecedence) next.
+     */
+    private void pushOperand(int minPrecedence) {
+        int f = push(OPERAND);
+        a[f] = minPrecedence;
+    }
+
+    /**
+     * One statement of a block for frame f, which resumes at state next; false once the
+     * block's “}” (or the end of the tokens) is reached.
+     */
+    private boolean statement(int f, int next) {
+        while (tokens.has(currentToken) && !peekIs("}")) {
+            if (call(f, ParseTable.BODY, next)) return true;
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------
+    // Rules, in the order of TheParser's RULE_* methods. A rule runs from its frame's
+    // state until it pushes a rule (and returns, to go on in the state it set) or ends.
+    // ------------------------------------------------------------
+
+    private void program(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_PROGRAM");
+                    open(NodeKind.PROGRAM);
+                    expectValue("class", "RULE_PROGRAM");
+                    expectIdentifier("RULE_PROGRAM");
+                    expectValue("{", "RULE_PROGRAM");
+                    state[f] = 1;
+                }
+                case 1 -> {
+                    if (!tokens.has(currentToken) || peekIs("}")) {
+                        expectValue("}", "RULE_PROGRAM");
+                        close();
+                        exitRule();
+                        pop();
+                        return;
+                    }
+                    if (isType(peekValue())) {
+                        // Only looking ahead: leave the type and name out of the tree
+                        int startTok = mark();
+                        SyntaxTree building = tree;
+                        tree = null;
+                        call(ParseTable.TYPE);
+                        expectIdentifier("RULE_PROGRAM");
+                        tree = building;
+                        boolean method = tokens.has(currentToken) && peekIs("(");
+                        reset(startTok);
+                        if (method ? call(f, ParseTable.METHOD, 1) : call(f, ParseTable.VARIABLE, 2)) return;
+                    } else {
+                        int before = currentToken;
+                        error("RULE_PROGRAM", "method or variable declaration");
+                        if (currentToken == before) currentToken++;
+                    }
+                }
+                default -> {
+                    expectValue(";", "RULE_PROGRAM");
+                    state[f] = 1;
+                }
+            }
+        }
+    }
+
+    private void method(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_METHODS");
+            open(NodeKind.METHOD);
+            String methodType = peekValue();
+            call(ParseTable.TYPE);
+            String methodName = tokens.value(currentToken);
+            expectIdentifier("RULE_METHODS");
+            expectValue("(", "RULE_METHODS");
+            open(NodeKind.PARAMS);
+            if (!peekIs(")")) {
+                call(ParseTable.PARAMS);
+            }
+            close();
+            expectValue(")", "RULE_METHODS");
+            registerMethod(methodName, methodType);
+            enterMethod(methodName, methodType);
+            open(NodeKind.BLOCK);
+            expectValue("{", "RULE_METHODS");
+        }
+        if (statement(f, 1)) return;
+        expectValue("}", "RULE_METHODS");
+        close();
+        exitMethod();
+        close();
+        exitRule();
+        pop();
+    }
+
+    private void returnStatement(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_RETURN");
+            open(NodeKind.RETURN);
+            expectValue("return", "RULE_RETURN");
+            String nextVal = tokens.has(currentToken) ? peekValue() : "";
+            if (!nextVal.equals(";") && !nextVal.equals("}")) {
+                if (call(f, ParseTable.EXPRESSION, 1)) return;
+            } else {
+                state[f] = 2;
+            }
+        }
+        checkReturn(state[f] == 1);
+        close();
+        exitRule();
+        pop();
+    }
+
+    private void doWhile(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_DO_WHILE");
+                    open(NodeKind.DO_WHILE);
+                    expectValue("do", "RULE_DO_WHILE");
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_DO_WHILE, currentToken);
+                    open(NodeKind.BLOCK);
+                    expectValue("{", "RULE_DO_WHILE");
+                    state[f] = 1;
+                }
+                case 1 -> {
+                    if (statement(f, 1)) return;
+                    expectValue("}", "RULE_DO_WHILE");
+                    close();
+                    semanticAnalizer.exitScope();
+                    expectValue("while", "RULE_DO_WHILE");
+                    expectValue("(", "RULE_DO_WHILE");
+                    if (call(f, ParseTable.EXPRESSION, 2)) return;
+                }
+                default -> {
+                    checkCondition("'do-while' condition", "boolean");
+                    expectValue(")", "RULE_DO_WHILE");
+                    expectValue(";", "RULE_DO_WHILE");
+                    close();
+                    exitRule();
+                    pop();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void switchStatement(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_SWITCH");
+                    open(NodeKind.SWITCH);
+                    expectValue("switch", "RULE_SWITCH");
+                    expectValue("(", "RULE_SWITCH");
+                    if (call(f, ParseTable.EXPRESSION, 1)) return;
+                }
+                case 1 -> {
+                    checkCondition("'switch' expression", "int");
+                    expectValue(")", "RULE_SWITCH");
+                    expectValue("{", "RULE_SWITCH");
+                    state[f] = 2;
+                }
+                case 2 -> {
+                    // Each “case” clause gets its own scope
+                    if (tokens.has(currentToken) && peekIs("case")) {
+                        open(NodeKind.CASE);
+                        expectValue("case", "RULE_SWITCH");
+                        caseLabel();
+                        expectValue(":", "RULE_SWITCH");
+                        semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_CASE, currentToken);
+                        state[f] = 3;
+                    } else if (tokens.has(currentToken) && peekIs("default")) {
+                        open(NodeKind.DEFAULT);
+                        expectValue("default", "RULE_SWITCH");
+                        expectValue(":", "RULE_SWITCH");
+                        semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_DEFAULT, currentToken);
+                        state[f] = 4;
+                    } else {
+                        state[f] = 5;
+                    }
+                }
+                case 3 -> {
+                    while (tokens.has(currentToken)
+                            && !(peekIs("case") || peekIs("default") || peekIs("}"))) {
+                        if (call(f, ParseTable.BODY, 3)) return;
+                    }
+                    semanticAnalizer.exitScope();
+                    close();
+                    state[f] = 2;
+                }
+                case 4 -> {
+                    if (statement(f, 4)) return;
+                    semanticAnalizer.exitScope();
+                    close();
+                    state[f] = 5;
+                }
+                default -> {
+                    expectValue("}", "RULE_SWITCH");
+                    close();
+                    exitRule();
+                    pop();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void print(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_PRINT");
+            open(NodeKind.PRINT);
+            expectValue("print", "RULE_PRINT");
+            expectValue("(", "RULE_PRINT");
+            if (call(f, ParseTable.EXPRESSION, 1)) return;
+        }
+        expectValue(")", "RULE_PRINT");
+        expectValue(";", "RULE_PRINT");
+        close();
+        exitRule();
+        pop();
+    }
+
+    // States of body(): a statement that ends with “;”, or one that does not
+    private static final int SEMICOLON = 1;
+    private static final int DONE = 2;
+
+    private void body(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_BODY");
+            String v = peekValue();
+            switch (v) {
+                case "return" -> {
+                    if (call(f, ParseTable.RETURN, SEMICOLON)) return;
+                }
+                case "while"  -> {
+                    if (call(f, ParseTable.WHILE, DONE)) return;
+                }
+                case "do"     -> {
+                    if (call(f, ParseTable.DO_WHILE, DONE)) return;
+                }
+                case "for"    -> {
+                    if (call(f, ParseTable.FOR, DONE)) return;
+                }
+                case "switch" -> {
+                    if (call(f, ParseTable.SWITCH, DONE)) return;
+                }
+                case "if"     -> {
+                    if (call(f, ParseTable.IF, DONE)) return;
+                }
+                case "print"  -> {
+                    if (call(f, ParseTable.PRINT, DONE)) return;
+                }
+                case "break", "continue" -> {
+                    leaf(v.equals("break") ? NodeKind.BREAK : NodeKind.CONTINUE);
+                    currentToken++;
+                    state[f] = SEMICOLON;
+                }
+                case ";" -> {
+                    // Absorb any stray semicolons
+                    while (tokens.has(currentToken) && peekIs(";")) {
+                        currentToken++;
+                    }
+                    state[f] = DONE;
+                }
+                default -> {
+                    state[f] = DONE;
+                    if (isType(v)) {
+                        if (call(f, ParseTable.VARIABLE, SEMICOLON)) return;
+                    } else if (peekKind() == TokenKind.ID) {
+                        String nxt = tokens.has(currentToken + 1) ? tokens.value(currentToken + 1) : "";
+                        if (nxt.equals("(")) {
+                            if (call(f, ParseTable.CALL_METHOD, SEMICOLON)) return;
+                        } else if (nxt.equals("=")) {
+                            if (call(f, ParseTable.ASSIGNMENT, SEMICOLON)) return;
+                        } else {
+                            error("RULE_BODY", "assignment or call");
+                            // Skip until “;” or “}”
+                            while (tokens.has(currentToken)
+                                    && !(peekIs(";") || peekIs("}"))) {
+                                currentToken++;
+                            }
+                            if (tokens.has(currentToken) && peekIs(";")) {
+                                currentToken++;
+                            }
+                        }
+                    } else {
+                        error("RULE_BODY", "statement");
+                        currentToken++;
+                    }
+                }
+            }
+        }
+        if (state[f] == SEMICOLON) {
+            expectValue(";", "RULE_BODY");
+        }
+        exitRule();
+        pop();
+    }
+
+    private void assignment(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_ASSIGNMENT");
+            open(NodeKind.ASSIGNMENT);
+            int assignName = tokens.identifier(currentToken);
+            expectIdentifier("RULE_ASSIGNMENT");
+            checkDeclared(assignName);
+            expectValue("=", "RULE_ASSIGNMENT");
+            if (call(f, ParseTable.EXPRESSION, 1)) return;
+        }
+        close();
+        exitRule();
+        pop();
+    }
+
+    private void callMethod(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_CALL_METHOD");
+            open(NodeKind.CALL);
+            b[f] = tokens.identifier(currentToken);
+            expectIdentifier("RULE_CALL_METHOD");
+            checkCallee(b[f]);
+            expectValue("(", "RULE_CALL_METHOD");
+            a[f] = semanticAnalizer.expressionStackSize();
+            if (call(f, ParseTable.PARAM_VALUES, 1)) return;
+        }
+        expectValue(")", "RULE_CALL_METHOD");
+        checkCall(b[f], a[f]);
+        close();
+        exitRule();
+        pop();
+    }
+
+    private void paramValues(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_PARAM_VALUES");
+            open(NodeKind.ARGUMENTS);
+            if (!peekIs(")") && call(f, ParseTable.EXPRESSION, 1)) return;
+        }
+        while (state[f] == 1 && tokens.has(currentToken) && peekIs(",")) {
+            expectValue(",", "RULE_PARAM_VALUES");
+            if (call(f, ParseTable.EXPRESSION, 1)) return;
+        }
+        close();
+        exitRule();
+        pop();
+    }
+
+    private void expression(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_EXPRESSION");
+            state[f] = 1;
+            pushOperand(1);
+            return;
+        }
+        exitRule();
+        pop();
+    }
+
+    // expression(minPrecedence) of TheParser: a = minPrecedence, b = from (the node
+    // count), c = maxPrecedence, d = the prefix count or the precedence of the operator
+    // whose right operand is being parsed
+    private void operand(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    b[f] = nodeCount();
+                    ParseTable.Operator prefix = ParseTable.prefix(terminal());
+                    if (prefix != null && prefix.precedence >= a[f]) {
+                        int count = 0;
+                        do {
+                            found(prefix.message);
+                            open(NodeKind.UNARY);
+                            currentToken++;
+                            count++;
+                        } while (prefix.repeats && ParseTable.prefix(terminal()) == prefix);
+                        d[f] = count;
+                        c[f] = prefix.precedence;
+                        state[f] = 1;
+                        if (atFirst(prefix.operand)) {
+                            pushOperand(prefix.precedence + 1);
+                            return;
+                        }
+                    } else {
+                        c[f] = Integer.MAX_VALUE;
+                        state[f] = 2;
+                        push(ATOM);
+                        return;
+                    }
+                }
+                case 1 -> {
+                    while (d[f]-- > 0) {
+                        close();
+                    }
+                    state[f] = 2;
+                }
+                case 2 -> {
+                    ParseTable.Operator op = ParseTable.binary(terminal());
+                    if (op == null || op.precedence < a[f] || op.precedence > c[f]) {
+                        pop();
+                        return;
+                    }
+                    found(op.message);
+                    wrap(NodeKind.BINARY, b[f]);
+                    currentToken++;
+                    d[f] = op.precedence;
+                    state[f] = 3;
+                    if (atFirst(op.operand)) {
+                        pushOperand(op.rightAssociative ? op.precedence : op.precedence + 1);
+                        return;
+                    }
+                }
+                default -> {
+                    close();
+                    c[f] = d[f];
+                    state[f] = 2;
+                }
+            }
+        }
+    }
+
+    private void atom(int f) {
+        switch (state[f]) {
+            case 0 -> {
+                String v = peekValue();
+                TokenKind tp = peekKind();
+                if (LITERALS.contains(tp) || v.equals("true") || v.equals("false")) {
+                    found("Literal ", v);
+                    leaf(NodeKind.LITERAL);
+                    currentToken++;
+                } else if (tp == TokenKind.ID) {
+                    int identName = tokens.identifier(currentToken);
+                    int identToken = currentToken;
+                    int from = nodeCount();
+                    expectIdentifier("RULE_C");
+                    if (checkDeclared(identName)) {
+                        String declared = semanticAnalizer.getDeclaredType(identName);
+                        if (declared != null) {
+                            semanticAnalizer.pushExpressionType(declared);
+                        }
+                    }
+                    if (peekIs("(")) {
+                        if (tree != null) tree.wrap(NodeKind.CALL, identToken, from);
+                        expectValue("(", "RULE_C");
+                        if (call(f, ParseTable.PARAM_VALUES, 1)) return;
+                        atom(f);
+                        return;
+                    }
+                } else if (expectValue("(", "RULE_C")) {
+                    if (call(f, ParseTable.EXPRESSION, 2)) return;
+                    atom(f);
+                    return;
+                } else {
+                    error("RULE_C", "expression atom");
+                    currentToken++;
+                }
+                pop();
+            }
+            case 1 -> {
+                expectValue(")", "RULE_C");
+                close();
+                pop();
+            }
+            default -> {
+                expectValue(")", "RULE_C");
+                pop();
+            }
+        }
+    }
+
+    private void variable(int f) {
+        if (state[f] == 0) {
+            enterRule("RULE_VARIABLE");
+            open(NodeKind.VARIABLE);
+            String varType = peekValue();
+            call(ParseTable.TYPE);
+            int varName = tokens.identifier(currentToken);
+            expectIdentifier("RULE_VARIABLE");
+            semanticAnalizer.checkVariable(varName, varType, "");
+            if (peekIs("=")) {
+                found("=");
+                currentToken++;
+                if (call(f, ParseTable.EXPRESSION, 1)) return;
+            }
+        }
+        close();
+        exitRule();
+        pop();
+    }
+
+    // States of ifStatement(), whileStatement() and forStatement() for a branch that is
+    // a block or a single statement
+    private static final int BLOCK = 10;
+
+    /**
+     * A “then”, “else” or loop body for frame f: a block, whose statements come from
+     * state BLOCK, or one statement; either way f goes on at state next.
+     */
+    private boolean branch(int f, String ruleName, int next) {
+        if (peekIs("{")) {
+            open(NodeKind.BLOCK);
+            expectValue("{", ruleName);
+            c[f] = next;
+            state[f] = BLOCK;
+            return false;
+        }
+        return call(f, ParseTable.BODY, next);
+    }
+
+    /**
+     * The BLOCK state: one more statement, or the closing “}”, after which f goes on at
+     * the state branch() was given. True if a statement was pushed.
+     */
+    private boolean block(int f, String ruleName) {
+        if (statement(f, BLOCK)) return true;
+        expectValue("}", ruleName);
+        close();
+        state[f] = c[f];
+        return false;
+    }
+
+    private void ifStatement(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_IF");
+                    open(NodeKind.IF);
+                    expectValue("if", "RULE_IF");
+                    expectValue("(", "RULE_IF");
+                    if (call(f, ParseTable.EXPRESSION, 1)) return;
+                }
+                case 1 -> {
+                    checkCondition("'if' condition", "boolean");
+                    expectValue(")", "RULE_IF");
+                    // “then” branch scope
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_IF, currentToken);
+                    if (branch(f, "RULE_IF", 2)) return;
+                }
+                case 2 -> {
+                    semanticAnalizer.exitScope();
+                    state[f] = 4;
+                    // Optional “else”
+                    if (tokens.has(currentToken) && peekIs("else")) {
+                        expectValue("else", "RULE_IF");
+                        if (peekIs("if")) {
+                            if (call(f, ParseTable.IF, 4)) return;
+                        } else {
+                            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_ELSE, currentToken);
+                            if (branch(f, "RULE_IF", 3)) return;
+                        }
+                    }
+                }
+                case 3 -> {
+                    semanticAnalizer.exitScope();
+                    state[f] = 4;
+                }
+                case BLOCK -> {
+                    if (block(f, "RULE_IF")) return;
+                }
+                default -> {
+                    close();
+                    exitRule();
+                    pop();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void forStatement(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_FOR");
+                    open(NodeKind.FOR);
+                    expectValue("for", "RULE_FOR");
+                    expectValue("(", "RULE_FOR");
+                    state[f] = 2;
+                    if (!peekIs(";")) {
+                        if (isType(peekValue())) {
+                            // Enter a short scope just for this var–decl
+                            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_FOR_INIT, currentToken);
+                            if (call(f, ParseTable.VARIABLE, 1)) return;
+                        } else if (call(f, ParseTable.ASSIGNMENT, 2)) {
+                            return;
+                        }
+                    } else {
+                        leaf(NodeKind.EMPTY);
+                    }
+                }
+                case 1 -> {
+                    semanticAnalizer.exitScope();
+                    state[f] = 2;
+                }
+                case 2 -> {
+                    expectValue(";", "RULE_FOR");
+                    state[f] = 4;
+                    if (!peekIs(";")) {
+                        if (call(f, ParseTable.EXPRESSION, 3)) return;
+                    } else {
+                        leaf(NodeKind.EMPTY);
+                    }
+                }
+                case 3 -> {
+                    checkCondition("'for' condition", "boolean");
+                    state[f] = 4;
+                }
+                case 4 -> {
+                    expectValue(";", "RULE_FOR");
+                    state[f] = 5;
+                    if (!peekIs(")")) {
+                        if (call(f, ParseTable.ASSIGNMENT, 5)) return;
+                    } else {
+                        leaf(NodeKind.EMPTY);
+                    }
+                }
+                case 5 -> {
+                    expectValue(")", "RULE_FOR");
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_FOR, currentToken);
+                    if (branch(f, "RULE_FOR", 6)) return;
+                }
+                case BLOCK -> {
+                    if (block(f, "RULE_FOR")) return;
+                }
+                default -> {
+                    semanticAnalizer.exitScope();
+                    close();
+                    exitRule();
+                    pop();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void whileStatement(int f) {
+        for (;;) {
+            switch (state[f]) {
+                case 0 -> {
+                    enterRule("RULE_WHILE");
+                    open(NodeKind.WHILE);
+                    expectValue("while", "RULE_WHILE");
+                    expectValue("(", "RULE_WHILE");
+                    if (call(f, ParseTable.EXPRESSION, 1)) return;
+                }
+                case 1 -> {
+                    checkCondition("'while' condition", "boolean");
+                    expectValue(")", "RULE_WHILE");
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_WHILE, currentToken);
+                    if (branch(f, "RULE_WHILE", 2)) return;
+                }
+                case BLOCK -> {
+                    if (block(f, "RULE_WHILE")) return;
+                }
+                default -> {
+                    semanticAnalizer.exitScope();
+                    close();
+                    exitRule();
+                    pop();
+                    return;
+                }
+            }
+        }
+    }
+}
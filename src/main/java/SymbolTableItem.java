@@ -17,8 +17,9 @@ public class SymbolTableItem {
     // For methods: the return type.
     private String type;
 
-    // A scope string (e.g. “function” or “methodName@returnType”).
-    private String scope;
+    // Id of the scope it was declared in, in its analyzer's scope tree
+    // (SemanticAnalizer.scopeName gives its name, e.g. “global” or “methodName@returnType”).
+    private int scope;
 
     // For a variable: holds its default‐value string (like "0", "false", "\"\"", etc.).
     // For a method: unused (null).
@@ -32,14 +33,17 @@ public class SymbolTableItem {
     // True if this entry represents a method; false if it’s a plain variable.
     private boolean isMethod;
 
+    // Position among the analyzer's declarations, the first being 0.
+    private int declaredAt;
+
     // ------------------------------------------------------------
     // Constructor for a VARIABLE entry.
     //
     //   type:  the variable’s declared type (e.g. "int", "boolean", etc.)
-    //   scope: the scope in which the variable lives (e.g. "foo@int")
+    //   scope: the id of the scope in which the variable lives (e.g. that of "foo@int")
     //   value: a string for a default value (e.g. "0", "false", "\"\"", etc.)
     // ------------------------------------------------------------
-    public SymbolTableItem(String type, String scope, String value) {
+    public SymbolTableItem(String type, int scope, String value) {
         this.type       = type;
         this.scope      = scope;
         this.value      = value;
@@ -51,10 +55,10 @@ public class SymbolTableItem {
     // Overloaded constructor for a METHOD entry.
     //
     //   returnType: the method’s return type (e.g. "int", "void", etc.)
-    //   scope:      a unique scope string for the method (e.g. "foo@int")
+    //   scope:      the id of the scope the method is declared in (e.g. that of "global")
     //   paramTypes: a List<String> of parameter types in order (e.g. ["int","boolean","String"])
     // ------------------------------------------------------------
-    public SymbolTableItem(String returnType, String scope, List<String> paramTypes) {
+    public SymbolTableItem(String returnType, int scope, List<String> paramTypes) {
         this.type       = returnType;            // the return type of the method
         this.scope      = scope;
         this.value      = null;                  // methods do not use 'value'
@@ -69,10 +73,10 @@ public class SymbolTableItem {
         this.type = type;
     }
 
-    public String getScope() {
+    public int getScope() {
         return scope;
     }
-    public void setScope(String scope) {
+    public void setScope(int scope) {
         this.scope = scope;
     }
 
@@ -83,6 +87,13 @@ public class SymbolTableItem {
         this.value = value;
     }
 
+    public int getDeclaredAt() {
+        return declaredAt;
+    }
+    void setDeclaredAt(int declaredAt) {
+        this.declaredAt = declaredAt;
+    }
+
     /** Returns true if this SymbolTableItem represents a method (not a variable). */
     public boolean isMethod() {
         return isMethod;
@@ -0,0 +1,395 @@
+import java.util.Arrays;
+
+/**
+ * Syntax tree kept in a flat arena: a node is an int index into parallel arrays of
+ * kinds, first children, next siblings and token indexes, so building a tree allocates
+ * no per-node objects. TheParser fills it while parsing when one is set with
+ * setTree(); reset() empties it, keeping the arrays, so one tree can be reused for
+ * file after file. Read it with kind/token/firstChild/nextSibling, a Cursor, or
+ * walk(Visitor). NodeKind describes the shape of each node.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class SyntaxTree {
+
+    /** No node: the child or sibling of a node that has none. */
+    public static final int NONE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private int[] kind;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] token;
+    private int size;
+
+    // Building: the last child of each node, and the nodes still open
+    private int[] lastChild;
+    private int[] open = new int[32];
+    private int depth;
+    private int lastTop = NONE;
+
+    private TokenSource tokens;
+
+    /**
+     * Callbacks for walk(). enter returns false to skip the node's children; exit is
+     * called for every node entered, after its children.
+     */
+    public interface Visitor {
+
+        default boolean enter(SyntaxTree tree, int node) {
+            return true;
+        }
+
+        default void exit(SyntaxTree tree, int node) {
+        }
+
+    }
+
+    public SyntaxTree() {
+        this(256);
+    }
+
+    public SyntaxTree(int capacity) {
+        capacity = Math.max(capacity, 16);
+        kind = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        token = new int[capacity];
+        lastChild = new int[capacity];
+    }
+
+    /**
+     * Removes all nodes; the arrays are kept for the next tree.
+     */
+    public void reset() {
+        reset(null);
+    }
+
+    /**
+     * Removes all nodes, and takes the tokens the next tree's token indexes refer to.
+     */
+    public void reset(TokenSource tokens) {
+        this.tokens = tokens;
+        size = 0;
+        depth = 0;
+        lastTop = NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The first node built (PROGRAM for a parse), or NONE if the tree is empty.
+     */
+    public int root() {
+        return size > 0 ? 0 : NONE;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kind[checked(node)]];
+    }
+
+    /**
+     * Index of the node's token in the parsed TokenSource, or NONE.
+     */
+    public int token(int node) {
+        return token[checked(node)];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[checked(node)];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[checked(node)];
+    }
+
+    /**
+     * Text of the node's token, or null if it has none. With a TokenStream only tokens
+     * still in its window can be read, and the others are null too; parse a TokenBuffer
+     * to keep them all.
+     */
+    public String value(int node) {
+        int t = token(node);
+        return t == NONE || tokens == null || !tokens.readable(t) ? null : tokens.value(t);
+    }
+
+    public TokenSource getTokens() {
+        return tokens;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int c = firstChild(node); c != NONE; c = nextSibling[c]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The i-th child of node, or NONE if it has fewer.
+     */
+    public int child(int node, int i) {
+        int c = firstChild(node);
+        while (c != NONE && i-- > 0) {
+            c = nextSibling[c];
+        }
+        return c;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Visits the nodes depth first, without recursion.
+     */
+    public void walk(Visitor visitor) {
+        int[] stack = new int[Math.max(depth, 16)];
+        int top = 0;
+        int node = root();
+        while (node != NONE) {
+            if (visitor.enter(this, node) && firstChild[node] != NONE) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = node;
+                node = firstChild[node];
+                continue;
+            }
+            visitor.exit(this, node);
+            while (nextSibling[node] == NONE && top > 0) {
+                node = stack[--top];
+                visitor.exit(this, node);
+            }
+            node = nextSibling[node];
+        }
+    }
+
+    /**
+     * One line per node, "KIND value", indented two spaces per level.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        walk(new Visitor() {
+            private int level;
+
+            @Override
+            public boolean enter(SyntaxTree tree, int node) {
+                sb.append("  ".repeat(level)).append(kind(node));
+                int t = token[node];
+                if (t != NONE) {
+                    sb.append(' ').append(tokens != null && tokens.readable(t) ? tokens.value(t) : "#" + t);
+                }
+                sb.append('\n');
+                level++;
+                return true;
+            }
+
+            @Override
+            public void exit(SyntaxTree tree, int node) {
+                level--;
+            }
+        });
+        return sb.toString();
+    }
+
+    private int checked(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("No node " + node);
+        }
+        return node;
+    }
+
+    // ------------------------------------------------------------
+    // Building (TheParser)
+    // ------------------------------------------------------------
+
+    /**
+     * Adds a node as the last child of the innermost open node and opens it.
+     */
+    int open(NodeKind k, int t) {
+        int node = leaf(k, t);
+        push(node);
+        return node;
+    }
+
+    /**
+     * Closes the innermost open node.
+     */
+    void close() {
+        if (depth > 0) depth--;
+    }
+
+    /**
+     * Adds a node without children as the last child of the innermost open node.
+     */
+    int leaf(NodeKind k, int t) {
+        if (size == kind.length) grow();
+        int node = size++;
+        kind[node] = k.ordinal();
+        token[node] = t;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        lastChild[node] = NONE;
+        if (depth == 0) {
+            if (lastTop != NONE) nextSibling[lastTop] = node;
+            lastTop = node;
+        } else {
+            int parent = open[depth - 1];
+            if (lastChild[parent] == NONE) {
+                firstChild[parent] = node;
+            } else {
+                nextSibling[lastChild[parent]] = node;
+            }
+            lastChild[parent] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Opens a new node in place of the innermost open node's last child, with that child
+     * as its first child, as a binary operator takes its left operand. The last child is
+     * only taken if it was added at or after node index from; otherwise the new node is
+     * simply added and starts with no children. The new node keeps the index of the
+     * child it replaces, which moves to a new index.
+     */
+    int wrap(NodeKind k, int t, int from) {
+        int last = depth == 0 ? lastTop : lastChild[open[depth - 1]];
+        if (last == NONE || last < from) {
+            return open(k, t);
+        }
+        if (size == kind.length) grow();
+        int moved = size++;
+        kind[moved] = kind[last];
+        token[moved] = token[last];
+        firstChild[moved] = firstChild[last];
+        lastChild[moved] = lastChild[last];
+        nextSibling[moved] = NONE;
+
+        kind[last] = k.ordinal();
+        token[last] = t;
+        firstChild[last] = moved;
+        lastChild[last] = moved;
+        push(last);
+        return last;
+    }
+
+    /**
+     * The innermost open node, or NONE.
+     */
+    int current() {
+        return depth > 0 ? open[depth - 1] : NONE;
+    }
+
+    /**
+     * Copies all of other's nodes into this tree, its top-level nodes becoming the last
+     * children of parent; used to put together a tree built in parts.
+     */
+    void graft(int parent, SyntaxTree other) {
+        int n = other.size;
+        if (n == 0) return;
+        while (size + n > kind.length) grow();
+        int offset = size;
+        for (int i = 0; i < n; i++) {
+            kind[offset + i] = other.kind[i];
+            token[offset + i] = other.token[i];
+            firstChild[offset + i] = shift(other.firstChild[i], offset);
+            nextSibling[offset + i] = shift(other.nextSibling[i], offset);
+            lastChild[offset + i] = shift(other.lastChild[i], offset);
+        }
+        size += n;
+        if (lastChild[parent] == NONE) {
+            firstChild[parent] = offset;
+        } else {
+            nextSibling[lastChild[parent]] = offset;
+        }
+        lastChild[parent] = offset + other.lastTop;
+    }
+
+    private static int shift(int node, int offset) {
+        return node == NONE ? NONE : node + offset;
+    }
+
+    private void push(int node) {
+        if (depth == open.length) open = Arrays.copyOf(open, depth * 2);
+        open[depth++] = node;
+    }
+
+    private void grow() {
+        int capacity = kind.length * 2;
+        kind = Arrays.copyOf(kind, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        token = Arrays.copyOf(token, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+    }
+
+    // ------------------------------------------------------------
+    // Cursor
+    // ------------------------------------------------------------
+
+    /**
+     * Read-only position in the tree that moves to children, siblings and back up to
+     * parents. It starts at the root.
+     */
+    public final class Cursor {
+
+        private int node = root();
+        private int[] path = new int[16];
+        private int level;
+
+        public int node() {
+            return node;
+        }
+
+        public NodeKind kind() {
+            return SyntaxTree.this.kind(node);
+        }
+
+        public int token() {
+            return SyntaxTree.this.token(node);
+        }
+
+        public String value() {
+            return SyntaxTree.this.value(node);
+        }
+
+        /**
+         * Moves to the first child; false, without moving, if there is none.
+         */
+        public boolean firstChild() {
+            int child = SyntaxTree.this.firstChild(node);
+            if (child == NONE) return false;
+            if (level == path.length) path = Arrays.copyOf(path, level * 2);
+            path[level++] = node;
+            node = child;
+            return true;
+        }
+
+        /**
+         * Moves to the next sibling; false, without moving, if there is none.
+         */
+        public boolean nextSibling() {
+            int sibling = SyntaxTree.this.nextSibling(node);
+            if (sibling == NONE) return false;
+            node = sibling;
+            return true;
+        }
+
+        /**
+         * Moves back to the parent; false, without moving, at the node it started from.
+         */
+        public boolean parent() {
+            if (level == 0) return false;
+            node = path[--level];
+            return true;
+        }
+
+        public int depth() {
+            return level;
+        }
+    }
+}
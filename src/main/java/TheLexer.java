@@ -1,20 +1,75 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * TheLexer class to analyze the input file. Recognizes: identifiers, keywords, numbers
  * (bin/oct/dec/hex), floats, chars, strings, operators, delimiters. Uses a DFA plus a small
- * post-check for CHAR literals.
+ * post-check for CHAR literals; keywords are a trie inside the DFA, so they are known
+ * without looking the lexeme up once it has been scanned.
+ * The whole source is scanned in a single pass and newlines are recorded as positions,
+ * so tokens (string literals) may span lines. Files are memory-mapped and, like ByteBuffer
+ * sources, lexed as raw UTF-8 bytes through Utf8Text: the language is ASCII, so only
+ * literal contents can hold multi-byte chars and nothing is decoded but token values.
+ * Offsets are then byte offsets. Tokens are either collected into a
+ * TokenBuffer by run() or pulled on demand through stream().
+ * Large sources are split into chunks at whitespace and lexed on a fork-join pool; since
+ * a chunk may begin inside a string or char literal, each one is also lexed from the
+ * states a literal can be in there, and the run matching the state the previous chunk
+ * ended in is kept when the chunks are stitched back together.
+ * The DFA is built once per JVM and shared by all lexers: it is loaded from the
+ * precompiled, minimized lexer.dfa resource, or built from spec() when that is missing.
+ * After changing spec(), regenerate the resource with buildTable().write(...).
+ * edit() applies a text change and re-lexes only the tokens around it.
+ * With a TokenCache set, run() reads the tokens of a source it has seen before back
+ * from disk instead of lexing it.
  *
  * @author javiergs
- * @version 0.2
+ * @version 0.5
  */
 public class TheLexer {
 
     private final File file;
-    private final Automata dfa;
-    private final Vector<TheToken> tokens = new Vector<>();
+    private CharSequence source;
+    private final DfaTable dfa = TABLE;
+    private final int startState = TABLE.stateId("SS");
+    private final int stringState = TABLE.stateId("SCS");
+    private final int charEndState = TABLE.stateId("CES");
+    private final TokenKind[] acceptKinds = ACCEPT_KINDS;
+    private TokenBuffer tokens;
+    // Copy of the source that edit() changes in place
+    private StringBuilder editable;
+    private TokenCache cache;
+    // Whether the source is UTF-8 bytes and the skip() table for it, set by restart()
+    private boolean utf8;
+    private boolean[] stays = STAYS;
+    private boolean fastPaths = true;
+
+    /** Sources at least this long are lexed in parallel by run(). */
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    // Offset of the first char of every line; lineStarts[0] is line 1
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+
+    // Scanner position, kept between calls so tokens can be pulled one at a time
+    private int pos;
+    private int state;
+    private int lexemeStart;
+    private int lexemeLine;
+    private int line;
+    private boolean finished;
 
     private static final Set<String> KEYWORDS =
             Set.of(
@@ -45,9 +100,97 @@ public class TheLexer {
                     "true",
                     "false");
 
+    static final String TABLE_RESOURCE = "/lexer.dfa";
+    private static final DfaTable TABLE = loadTable();
+    private static final TokenKind[] ACCEPT_KINDS = acceptKinds(TABLE);
+
+    // Separator chars, looked up instead of searched for
+    private static final byte SPACE = 1;
+    private static final byte DELIMITER = 2;
+    private static final byte OPERATOR = 4;
+    private static final byte[] SEPARATORS = new byte[128];
+
+    static {
+        for (char c : " \t\n\r".toCharArray()) SEPARATORS[c] = SPACE;
+        for (char c : ",;()[]{}:".toCharArray()) SEPARATORS[c] = DELIMITER;
+        for (char c : "=*/%^&|<>!~+-".toCharArray()) SEPARATORS[c] = OPERATOR;
+    }
+
+    // STAYS[state * 257 + min(c, 256)]: reading c changes nothing, see skip()
+    private static final boolean[] STAYS = stays(TABLE, false);
+    private static final boolean[] STAYS_UTF8 = stays(TABLE, true);
+
     public TheLexer(File file) {
+        this(file, null);
+    }
+
+    /**
+     * Lexes an in-memory source, no file needed.
+     */
+    public TheLexer(CharSequence source) {
+        this(null, source);
+    }
+
+    /**
+     * Lexes an in-memory UTF-8 encoded source without decoding it. The buffer's position
+     * and limit are not changed.
+     */
+    public TheLexer(ByteBuffer source) {
+        this(null, new Utf8Text(source));
+    }
+
+    private TheLexer(File file, CharSequence source) {
         this.file = file;
-        this.dfa = new Automata();
+        this.source = source;
+    }
+
+    private static DfaTable loadTable() {
+        try (InputStream in = TheLexer.class.getResourceAsStream(TABLE_RESOURCE)) {
+            if (in != null) return DfaTable.read(in);
+        } catch (IOException e) {
+            System.err.println("Cannot read " + TABLE_RESOURCE + ", rebuilding the DFA: " + e.getMessage());
+        }
+        return buildTable();
+    }
+
+    /**
+     * Builds and minimizes the lexer DFA; the states the scanner refers to by name stay apart.
+     */
+    static DfaTable buildTable() {
+        return spec().minimize("SS", "SCS", "CES");
+    }
+
+    private static boolean[] stays(DfaTable dfa, boolean utf8) {
+        int start = dfa.stateId("SS");
+        int string = dfa.stateId("SCS");
+        int charEnd = dfa.stateId("CES");
+        boolean[] stays = new boolean[dfa.getStateCount() * 257];
+        for (int state = 0; state < dfa.getStateCount(); state++) {
+            boolean literal = state == string || state == charEnd;
+            for (char c = 0; c <= 256; c++) {
+                if (c == '\n') continue;
+                boolean separator = c < 128 && SEPARATORS[c] != 0 && !literal;
+                stays[state * 257 + c] = state == start
+                        ? separator && SEPARATORS[c] == SPACE
+                        : !separator && (dfa.nextState(state, c) == state || utf8 && continues(state, charEnd, c));
+            }
+        }
+        return stays;
+    }
+
+    private static TokenKind[] acceptKinds(DfaTable dfa) {
+        TokenKind[] kinds = new TokenKind[dfa.getStateCount()];
+        for (int state = 0; state < kinds.length; state++) {
+            if (dfa.isAcceptState(state)) kinds[state] = TokenKind.valueOf(dfa.getAcceptStateName(state));
+        }
+        return kinds;
+    }
+
+    /**
+     * The lexer specification.
+     */
+    static Automata spec() {
+        Automata dfa = new Automata();
 
         /* Operators */
         dfa.addTransitions("SS", "+-*/=%^&|<>!~@", "OPS");
@@ -126,84 +269,704 @@ public class TheLexer {
         dfa.addTransitions(
                 "IDS", "$_abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ", "IDS");
         dfa.addAcceptState("IDS", "ID");
+
+        /* Keywords: a trie of states that behave as IDS except on the next keyword char */
+        String identifierChars = "$_abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String keyword : KEYWORDS) {
+            for (int i = 1; i <= keyword.length(); i++) {
+                prefixes.add(keyword.substring(0, i));
+            }
+        }
+        for (String prefix : prefixes) {
+            dfa.addTransitions("KW_" + prefix, identifierChars, "IDS");
+            dfa.addAcceptState("KW_" + prefix, KEYWORDS.contains(prefix) ? "KEYWORD" : "ID");
+        }
+        for (String prefix : prefixes) {
+            String from = prefix.length() == 1 ? "SS" : "KW_" + prefix.substring(0, prefix.length() - 1);
+            dfa.addTransition(from, prefix.substring(prefix.length() - 1), "KW_" + prefix);
+        }
+
+        return dfa;
     }
 
     public void run() throws IOException {
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                algorithm(line);
+        begin();
+        String key = cache == null ? null : cache.key(source);
+        if (key == null || !loadCached(key)) {
+            tokens = new TokenBuffer(source, Math.max(16, source.length() / 8));
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            if (source.length() >= PARALLEL_THRESHOLD && parallelism > 1) {
+                scanChunks(ForkJoinPool.commonPool(), parallelism * 4);
+            } else {
+                scan(tokens, false);
             }
+            if (key != null) cache.store(key, tokens, lineStarts, lineCount);
+        }
+        // The parser's threads read the names without locking
+        tokens.identifiers().freeze();
+    }
+
+    /**
+     * Lexes the source as the given number of chunks on the given pool. The tokens are
+     * the same as the ones a sequential run() produces.
+     */
+    public void run(ForkJoinPool pool, int chunks) throws IOException {
+        begin();
+        String key = cache == null ? null : cache.key(source);
+        if (key == null || !loadCached(key)) {
+            tokens = new TokenBuffer(source, Math.max(16, source.length() / 8));
+            scanChunks(pool, chunks);
+            if (key != null) cache.store(key, tokens, lineStarts, lineCount);
+        }
+        tokens.identifiers().freeze();
+    }
+
+    /**
+     * Lets run() take tokens from, and add them to, the given cache; null turns it off.
+     */
+    public void setCache(TokenCache cache) {
+        this.cache = cache;
+    }
+
+    private boolean loadCached(String key) {
+        TokenCache.Entry entry = cache.load(key, source);
+        if (entry == null) return false;
+        tokens = entry.tokens;
+        lineStarts = entry.lineStarts;
+        lineCount = entry.lineStarts.length;
+        pos = source.length();
+        finished = true;
+        return true;
+    }
+
+    /**
+     * Fingerprint of the shared DFA, which TokenCache entries are only valid for.
+     */
+    static long tableFingerprint() {
+        return TABLE.fingerprint();
+    }
+
+    /**
+     * Returns a stream that lexes tokens only as the reader asks for them, keeping a
+     * window of TokenStream.DEFAULT_WINDOW tokens instead of the whole token list.
+     */
+    public TokenStream stream() throws IOException {
+        return stream(TokenStream.DEFAULT_WINDOW);
+    }
+
+    public TokenStream stream(int window) throws IOException {
+        begin();
+        return new TokenStream(this, source, window);
+    }
+
+    private void begin() throws IOException {
+        if (source == null) {
+            source = read(file);
+        }
+        restart();
+    }
+
+    private void restart() {
+        utf8 = source instanceof Utf8Text;
+        stays = utf8 ? STAYS_UTF8 : STAYS;
+        pos = 0;
+        state = startState;
+        lexemeStart = -1;
+        lexemeLine = 1;
+        line = 1;
+        finished = false;
+        lineCount = 0;
+        addLineStart(0);
+    }
+
+    /**
+     * Lexes until at least one more token has been handed to the sink or the source
+     * ends. Returns false once there is nothing left to lex.
+     */
+    boolean advance(TokenSink sink) {
+        return scan(sink, true);
+    }
+
+    /**
+     * Maps the file; its UTF-8 bytes are lexed as they are.
+     */
+    private static CharSequence read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Utf8Text(bytes);
         }
     }
 
     public void printTokens() {
-        for (TheToken t : tokens) {
-            System.out.printf("%10s\t|\t%s%n", t.getValue(), t.getType());
+        for (int i = 0; i < tokens.size(); i++) {
+            System.out.printf("%10s\t|\t%s%n", tokens.value(i), tokens.kind(i));
         }
     }
 
+    /**
+     * Tokens from the last run as TheToken objects; prefer getTokenBuffer().
+     */
     public Vector<TheToken> getTokens() {
+        return tokens.toVector();
+    }
+
+    public TokenBuffer getTokenBuffer() {
         return tokens;
     }
 
-    private void algorithm(String line) {
-        String state = "SS";
-        StringBuilder lexeme = new StringBuilder();
+    /**
+     * Number of lines seen by the last run.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Offset in the source of the first char of the given (1-based) line.
+     */
+    public int getLineStart(int line) {
+        return lineStarts[line - 1];
+    }
+
+    private boolean scan(TokenSink sink, boolean untilToken) {
+        if (finished) return false;
+        CharSequence text = source;
+        int n = text.length();
+        int state = this.state;
+        int lexemeStart = this.lexemeStart;
+        int lexemeLine = this.lexemeLine;
+        int line = this.line;
 
-        for (int i = 0; i < line.length(); i++) {
-            char ch = line.charAt(i);
+        for (int i = pos; i < n; i++) {
+            if (fastPaths) {
+                i = skip(text, i, n, state);
+                if (i == n) break;
+            }
+            char ch = text.charAt(i);
+            boolean emitted = false;
 
-            if (!(isOperator(ch, state) || isDelimiter(ch, state) || isSpace(ch, state))) {
-                state = dfa.getNextState(state, ch);
-                lexeme.append(ch);
+            if (!isSeparator(ch, state)) {
+                if (lexemeStart < 0) {
+                    lexemeStart = i;
+                    lexemeLine = line;
+                }
+                state = next(state, ch);
             } else {
-                flushToken(state, lexeme.toString());
-                if (isOperator(ch, state)) addToken(String.valueOf(ch), "OPERATOR");
-                if (isDelimiter(ch, state)) addToken(String.valueOf(ch), "DELIMITER");
-                state = "SS";
-                lexeme.setLength(0);
+                emitted = flushToken(sink, text, state, lexemeStart, i, lexemeLine);
+                if (isOperator(ch, state)) {
+                    sink.add(TokenKind.OPERATOR, i, 1, line);
+                    emitted = true;
+                }
+                if (isDelimiter(ch, state)) {
+                    sink.add(TokenKind.DELIMITER, i, 1, line);
+                    emitted = true;
+                }
+                state = startState;
+                lexemeStart = -1;
+            }
+
+            if (ch == '\n') {
+                line++;
+                addLineStart(i + 1);
+            }
+
+            if (emitted && untilToken) {
+                this.pos = i + 1;
+                this.state = state;
+                this.lexemeStart = lexemeStart;
+                this.lexemeLine = lexemeLine;
+                this.line = line;
+                return true;
             }
         }
 
-        flushToken(state, lexeme.toString());
+        flushToken(sink, text, state, lexemeStart, n, lexemeLine);
+        pos = n;
+        finished = true;
+        return true;
     }
 
-    private void flushToken(String state, String lexeme) {
-        if (lexeme.isEmpty()) return;
+    // ------------------------------------------------------------
+    // Incremental lexing
+    // ------------------------------------------------------------
+
+    /**
+     * Replaces removed chars at offset with inserted in the source of the last run and
+     * updates its token buffer. Lexing restarts right after the last token decided before
+     * the offset, where the scanner is back in SS, and stops as soon as the new scan and
+     * the old one are both in SS with no lexeme at the same char after the edit; from there
+     * on the old tokens are kept, shifted. The lexer edits its own copy of the source, so
+     * TheToken objects taken before an edit should not be used after it.
+     * Offsets are char offsets: on its first edit, a lexer over UTF-8 bytes switches to a
+     * decoded copy and lexes it once more in full, into the same token buffer, where
+     * tokens and lines then have char offsets and names keep their ids.
+     */
+    public TokenEdit edit(int offset, int removed, CharSequence inserted) {
+        if (tokens == null) {
+            throw new IllegalStateException("Nothing to edit, run() has not been called");
+        }
+        if (editable != source) {
+            boolean bytes = source instanceof Utf8Text;
+            editable = new StringBuilder(bytes ? source.toString() : source);
+            source = editable;
+            if (bytes) {
+                restart();
+                tokens.reset(source);
+                scan(tokens, false);
+            }
+        }
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException(
+                    "Edit [" + offset + ", " + (offset + removed) + ") outside source of length " + source.length());
+        }
+        StringBuilder text = editable;
+        int delta = inserted.length() - removed;
+        int lineDelta = editLineStarts(offset, removed, inserted);
+        text.replace(offset, offset + removed, inserted.toString());
+
+        // Tokens whose last char read (the separator after them) comes before the edit stay
+        int first = tokensEndingBefore(offset);
+        int from = first > 0 ? tokens.start(first - 1) + tokens.length(first - 1) : 0;
+
+        TokenBuffer changed = new TokenBuffer(text, 16);
+        int line = linesUpTo(from);
+        int state = startState;
+        int lexemeStart = -1;
+        int lexemeLine = line;
+        int agreeFrom = offset + inserted.length();
+        int old = first;
+        int end = -1;
+
+        for (int i = from; i < text.length(); i++) {
+            if (fastPaths && state != startState) {
+                i = skip(text, i, text.length(), state);
+                if (i == text.length()) break;
+            }
+            char ch = text.charAt(i);
+
+            if (!isSeparator(ch, state)) {
+                if (lexemeStart < 0) {
+                    lexemeStart = i;
+                    lexemeLine = line;
+                }
+                state = next(state, ch);
+            } else {
+                flushToken(changed, text, state, lexemeStart, i, lexemeLine);
+                if (isOperator(ch, state)) changed.add(TokenKind.OPERATOR, i, 1, line);
+                if (isDelimiter(ch, state)) changed.add(TokenKind.DELIMITER, i, 1, line);
+                state = startState;
+                lexemeStart = -1;
+            }
+
+            if (ch == '\n') line++;
+
+            // Resync: was the old scan also between tokens after this char?
+            if (i >= agreeFrom && state == startState && lexemeStart < 0) {
+                int q = i - delta;
+                while (old < tokens.size() && tokens.start(old) + tokens.length(old) <= q) old++;
+                boolean inside = old < tokens.size() && tokens.start(old) <= q;
+                if (!inside) {
+                    end = old;
+                    break;
+                }
+                if (tokens.start(old) == q && (isOperator(ch, startState) || isDelimiter(ch, startState))) {
+                    end = old + 1;
+                    break;
+                }
+            }
+        }
+        if (end < 0) {
+            flushToken(changed, text, state, lexemeStart, text.length(), lexemeLine);
+            end = tokens.size();
+        }
+
+        tokens.replace(first, end, changed, text, delta, lineDelta);
+        return new TokenEdit(first, end - first, changed.size());
+    }
+
+    /**
+     * Number of tokens whose end, the separator that closed them, is before offset.
+     */
+    private int tokensEndingBefore(int offset) {
+        int lo = 0;
+        int hi = tokens.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.start(mid) + tokens.length(mid) < offset) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Number of lines starting at or before offset, that is the line of the char at offset.
+     */
+    private int linesUpTo(int offset) {
+        int lo = 0;
+        int hi = lineCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lineStarts[mid] <= offset) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Updates the line starts for an edit and returns the change in the number of lines.
+     */
+    private int editLineStarts(int offset, int removed, CharSequence inserted) {
+        int lo = linesUpTo(offset);
+        int hi = linesUpTo(offset + removed);
+        int added = 0;
+        for (int i = 0; i < inserted.length(); i++) {
+            if (inserted.charAt(i) == '\n') added++;
+        }
+        int count = lineCount - (hi - lo) + added;
+        if (count > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(count, lineStarts.length * 2));
+        }
+        int delta = inserted.length() - removed;
+        System.arraycopy(lineStarts, hi, lineStarts, lo + added, lineCount - hi);
+        for (int i = lo + added; i < count; i++) {
+            lineStarts[i] += delta;
+        }
+        for (int i = 0, k = lo; i < inserted.length(); i++) {
+            if (inserted.charAt(i) == '\n') lineStarts[k++] = offset + i + 1;
+        }
+        lineCount = count;
+        return added - (hi - lo);
+    }
+
+    // ------------------------------------------------------------
+    // Parallel lexing
+    // ------------------------------------------------------------
+
+    /**
+     * Tokens of one chunk lexed from one entry state. Lines are relative to the chunk's
+     * first line. A lexeme still open when the chunk starts (carried) is not emitted
+     * here, since its start is unknown; flushState/flushEnd record where it ended.
+     */
+    private static final class Run {
+        final int entry;
+        final TokenBuffer tokens;
+        int flushState;
+        int flushEnd = -1;
+        int exitState;
+        int exitLexemeStart;
+        int exitLexemeLine;
+        boolean exitCarried;
+        // Once it reaches the same state as the run from SS, the rest is that run's
+        Run join;
+        int joinToken;
+
+        Run(int entry, TokenBuffer tokens) {
+            this.entry = entry;
+            this.tokens = tokens;
+        }
+    }
+
+    private static final class Chunk {
+        final int from;
+        final int to;
+        Run fromStart;
+        final List<Run> speculative = new ArrayList<>();
+        // Offsets after which the run from SS is back in SS with no lexeme
+        BitSet fresh;
+        int[] lineStarts = new int[16];
+        int lineCount;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void addLineStart(int offset) {
+            if (lineCount == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            }
+            lineStarts[lineCount++] = offset;
+        }
+    }
+
+    private void scanChunks(ForkJoinPool pool, int chunks) {
+        int[] bounds = split(chunks);
+        if (bounds.length <= 2) {
+            scan(tokens, false);
+            return;
+        }
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int k = 0; k + 1 < bounds.length; k++) {
+            int from = bounds[k];
+            int to = bounds[k + 1];
+            tasks.add(pool.submit(() -> lexChunk(from, to)));
+        }
+
+        // Stitch in order, picking the run that starts in the state the previous one ended in
+        CharSequence text = source;
+        int state = startState;
+        int lexemeStart = -1;
+        int lexemeLine = 1;
+        int line = 1;
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk chunk = task.join();
+            Run run = pick(chunk, state, lexemeStart >= 0);
+            if (run.flushEnd >= 0) {
+                flushToken(tokens, text, run.flushState, lexemeStart, run.flushEnd, lexemeLine);
+            }
+            tokens.append(run.tokens, 0, run.tokens.size(), line);
+            if (run.join != null) {
+                tokens.append(run.join.tokens, run.joinToken, run.join.tokens.size(), line);
+            }
+            state = run.exitState;
+            if (!run.exitCarried) {
+                lexemeStart = run.exitLexemeStart;
+                lexemeLine = line + run.exitLexemeLine;
+            }
+            for (int i = 0; i < chunk.lineCount; i++) {
+                addLineStart(chunk.lineStarts[i]);
+            }
+            line += chunk.lineCount;
+        }
+        flushToken(tokens, text, state, lexemeStart, text.length(), lexemeLine);
+        pos = text.length();
+        this.line = line;
+        finished = true;
+    }
+
+    /**
+     * Chunk boundaries: roughly equal parts, each moved forward to just after a
+     * whitespace char so that a chunk never starts in the middle of a plain token.
+     */
+    private int[] split(int chunks) {
+        CharSequence text = source;
+        int n = text.length();
+        int[] bounds = new int[Math.max(chunks, 1) + 1];
+        int count = 1;
+        for (int k = 1; k < chunks; k++) {
+            int b = Math.max((int) ((long) n * k / chunks), bounds[count - 1] + 1);
+            while (b < n && !isSpace(text.charAt(b - 1), startState)) b++;
+            if (b >= n) break;
+            bounds[count++] = b;
+        }
+        bounds[count++] = n;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private Chunk lexChunk(int from, int to) {
+        Chunk chunk = new Chunk(from, to);
+        chunk.fromStart = lexChunk(chunk, startState, false);
+        if (from > 0) {
+            // Right before the chunk the previous one was either between tokens or inside a literal
+            char before = source.charAt(from - 1);
+            for (int literal : new int[]{stringState, charEndState}) {
+                int entry = dfa.nextState(literal, before);
+                if (entry != startState && find(chunk, entry) == null) {
+                    chunk.speculative.add(lexChunk(chunk, entry, true));
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private static Run find(Chunk chunk, int entry) {
+        for (Run run : chunk.speculative) {
+            if (run.entry == entry) return run;
+        }
+        return null;
+    }
+
+    private Run pick(Chunk chunk, int entry, boolean carried) {
+        if (!carried) return chunk.fromStart;
+        Run run = find(chunk, entry);
+        // Not among the speculated entry states: lex it now
+        return run != null ? run : lexChunk(chunk, entry, true);
+    }
+
+    private Run lexChunk(Chunk chunk, int entry, boolean carried) {
+        CharSequence text = source;
+        int from = chunk.from;
+        int to = chunk.to;
+        Run run = new Run(entry, new TokenBuffer(text, Math.max(16, (to - from) / 8)));
+        boolean first = chunk.fromStart == null;
+        if (first) chunk.fresh = new BitSet(to - from);
+        int state = entry;
+        int lexemeStart = carried ? from : -1;
+        int lexemeLine = 0;
+        int line = 0;
+
+        for (int i = from; i < to; i++) {
+            if (fastPaths && (first || state != startState)) {
+                int j = skip(text, i, to, state);
+                if (state == startState) chunk.fresh.set(i - from, j - from);
+                i = j;
+                if (i == to) break;
+            }
+            char ch = text.charAt(i);
+
+            if (!isSeparator(ch, state)) {
+                if (lexemeStart < 0) {
+                    lexemeStart = i;
+                    lexemeLine = line;
+                }
+                state = next(state, ch);
+            } else {
+                if (carried) {
+                    run.flushState = state;
+                    run.flushEnd = i;
+                    carried = false;
+                } else {
+                    flushToken(run.tokens, text, state, lexemeStart, i, lexemeLine);
+                }
+                if (isOperator(ch, state)) run.tokens.add(TokenKind.OPERATOR, i, 1, line);
+                if (isDelimiter(ch, state)) run.tokens.add(TokenKind.DELIMITER, i, 1, line);
+                state = startState;
+                lexemeStart = -1;
+            }
+
+            if (ch == '\n') {
+                line++;
+                if (first) chunk.addLineStart(i + 1);
+            }
+
+            if (state == startState && lexemeStart < 0) {
+                if (first) {
+                    chunk.fresh.set(i - from);
+                } else if (chunk.fresh.get(i - from)) {
+                    Run join = chunk.fromStart;
+                    run.join = join;
+                    run.joinToken = tokensUpTo(join.tokens, i);
+                    run.exitState = join.exitState;
+                    run.exitLexemeStart = join.exitLexemeStart;
+                    run.exitLexemeLine = join.exitLexemeLine;
+                    return run;
+                }
+            }
+        }
+
+        run.exitState = state;
+        run.exitLexemeStart = lexemeStart;
+        run.exitLexemeLine = lexemeLine;
+        run.exitCarried = carried;
+        return run;
+    }
+
+    /**
+     * Number of tokens starting at or before offset.
+     */
+    private static int tokensUpTo(TokenBuffer tokens, int offset) {
+        int lo = 0;
+        int hi = tokens.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tokens.start(mid) <= offset) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void addLineStart(int offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = offset;
+    }
+
+    private boolean flushToken(TokenSink sink, CharSequence text, int state, int start, int end, int line) {
+        if (start < 0) return false;
 
         if (dfa.isAcceptState(state)) {
-            String type = dfa.getAcceptStateName(state);
-            if ("CHAR".equals(type) && !isValidCharLiteral(lexeme)) type = "ERROR";
-            addToken(lexeme, type);
-        } else if (!"SS".equals(state)) {
-            addToken(lexeme, "ERROR");
+            TokenKind kind = acceptKinds[state];
+            if (kind == TokenKind.CHAR && !isValidCharLiteral(text, start, end - start)) kind = TokenKind.ERROR;
+            sink.add(kind, start, end - start, line);
+        } else if (state != startState) {
+            sink.add(TokenKind.ERROR, start, end - start, line);
+        } else {
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Inside a string body or right after a char literal's content, separators are
+     * part of the lexeme.
+     */
+    private boolean inLiteral(int st) {
+        return st == stringState || st == charEndState;
+    }
+
+    private boolean isSeparator(char c, int st) {
+        return c < 128 && SEPARATORS[c] != 0 && !inLiteral(st);
+    }
+
+    private boolean isSpace(char c, int st) {
+        return c < 128 && SEPARATORS[c] == SPACE && !inLiteral(st);
+    }
+
+    private boolean isDelimiter(char c, int st) {
+        return c < 128 && SEPARATORS[c] == DELIMITER && !inLiteral(st);
     }
 
-    private void addToken(String lexeme, String type) {
-        if ("ID".equals(type) && KEYWORDS.contains(lexeme)) type = "KEYWORD";
-        tokens.add(new TheToken(lexeme, type));
+    private boolean isOperator(char c, int st) {
+        return c < 128 && SEPARATORS[c] == OPERATOR && !inLiteral(st);
+    }
+
+    /**
+     * Fast path over the runs most of a source is made of: identifier chars in IDS,
+     * string bodies in SCS, digits, and blanks between tokens. Returns the first index
+     * from i whose char would change the scanner; the chars before it leave the state,
+     * the lexeme and the line as they are, so the DFA is not consulted for them.
+     */
+    private int skip(CharSequence text, int i, int end, int state) {
+        if (utf8) {
+            // Eight bytes at a time through string bodies and indentation. Names stay on
+            // the table below: most end within a word, and testing words first was slower
+            // (see BenchmarkTheLexer)
+            if (state == stringState) {
+                i = ((Utf8Text) text).skipWordsWithout(i, end, '"', '\n');
+            } else if (state == startState) {
+                i = ((Utf8Text) text).skipSpaceWords(i, end);
+            }
+        }
+        boolean[] stays = this.stays;
+        int row = state * 257;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (!stays[row + (c < 256 ? c : 256)]) break;
+            i++;
+        }
+        return i;
     }
 
-    private boolean isSpace(char c, String st) {
-        return !("SCS".equals(st) || "CES".equals(st)) && (c == ' ' || c == '\t' || c == '\n');
+    private int next(int state, char ch) {
+        return utf8 && continues(state, charEndState, ch) ? state : dfa.nextState(state, ch);
     }
 
-    private boolean isDelimiter(char c, String st) {
-        return !("SCS".equals(st) || "CES".equals(st)) && ",;()[]{}:".indexOf(c) >= 0;
+    /**
+     * In UTF-8 input the continuation bytes of a char literal's content belong to the
+     * char that started it, so CES reads them without moving; elsewhere they behave as
+     * the non-ASCII chars they are part of (SCS loops on them, other states are dead).
+     */
+    private static boolean continues(int state, int charEnd, char ch) {
+        return state == charEnd && ch >= 0x80 && ch < 0xC0;
     }
 
-    private boolean isOperator(char c, String st) {
-        return !("SCS".equals(st) || "CES".equals(st)) && "=*/%^&|<>!~+-".indexOf(c) >= 0;
+    /**
+     * Turns the fast paths off, to compare them with the char by char scan.
+     */
+    void setFastPaths(boolean fastPaths) {
+        this.fastPaths = fastPaths;
     }
 
-    private boolean isValidCharLiteral(String s) {
-        if (s.length() == 3) {
-            return s.charAt(0) == '\'' && s.charAt(2) == '\'' && s.charAt(1) != '\'';
+    private boolean isValidCharLiteral(CharSequence s, int start, int length) {
+        int end = start + length;
+        int chars = utf8 ? ((Utf8Text) s).charCount(start, end) : length;
+        if (chars == 3) {
+            return s.charAt(start) == '\'' && s.charAt(end - 1) == '\'' && s.charAt(start + 1) != '\'';
         }
-        if (s.length() == 4) {
-            return s.charAt(0) == '\'' && s.charAt(1) == '\\' && s.charAt(3) == '\'';
+        if (chars == 4) {
+            return s.charAt(start) == '\'' && s.charAt(start + 1) == '\\' && s.charAt(end - 1) == '\'';
         }
         return false;
     }
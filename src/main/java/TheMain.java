@@ -1,6 +1,5 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.Vector;
 
 /**
  * Main class to run the lexer
@@ -16,8 +15,9 @@ public class TheMain {
 		lexer.run();
 		lexer.printTokens();
 
-		Vector<TheToken> tokens = lexer.getTokens();
+		TokenBuffer tokens = lexer.getTokenBuffer();
 		TheParser parser = new TheParser(tokens);
+		parser.setListener(new TreePrinter());
 		parser.run();
 	}
 
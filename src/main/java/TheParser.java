@@ -1,10 +1,19 @@
 // TheParser.java
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
-import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
@@ -15,9 +24,22 @@ import java.util.Collections;
  */
 public class TheParser extends ParserUtils {
 
+    /**
+     * run() parses method bodies in parallel once a class has this many of them.
+     */
+    public static final int PARALLEL_METHODS = 64;
+
+    // Token kinds accepted as literals in expressions and as switch labels
+    protected static final Set<TokenKind> LITERALS = EnumSet.of(
+            TokenKind.INTEGER, TokenKind.OCTAL, TokenKind.HEXADECIMAL, TokenKind.BINARY,
+            TokenKind.STRING, TokenKind.CHAR, TokenKind.FLOAT);
+    protected static final Set<TokenKind> CASE_LITERALS = EnumSet.of(
+            TokenKind.INTEGER, TokenKind.OCTAL, TokenKind.HEXADECIMAL, TokenKind.BINARY,
+            TokenKind.STRING, TokenKind.CHAR);
+
     // Semantic‐analysis fields
     private int errorCount;
-    private SemanticAnalizer semanticAnalizer;
+    protected SemanticAnalizer semanticAnalizer;
 
     // Temporary storage for <paramName, paramType> pairs in a method
     private Vector<Vector<String>> semanticNamesTypes = new Vector<>();
@@ -25,25 +47,404 @@ public class TheParser extends ParserUtils {
     // Current function’s declared return type (used inside RULE_RETURN)
     private String currentFunctionReturnType = null;
 
+    // Set while parsing the class level of a parallel parse: method bodies are skipped
+    private ClassLevel classLevel;
+
+    // Whether method bodies see every class-level declaration (see setTwoPhase)
+    private boolean twoPhase;
+
+    // Set while a sequential parse runs in two-phase mode: the first pass's declarations
+    private SemanticAnalizer classTable;
+
     public TheParser(Vector<TheToken> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    public TheParser(TokenSource tokens) {
         super(tokens);
         this.errorCount = 0;
-        this.semanticAnalizer = new SemanticAnalizer();
+        this.semanticAnalizer = new SemanticAnalizer(tokens.identifiers());
+    }
+
+    /**
+     * Start over on new tokens: the semantic analyzer is emptied, and the listener, tree
+     * and error stream are kept. A parser that is reset can be used again instead of
+     * building a new one; see ParserPool.
+     */
+    @Override
+    public void reset(TokenSource tokens) {
+        super.reset(tokens);
+        errorCount = 0;
+        semanticAnalizer.reset();
+        semanticAnalizer.setIdentifiers(tokens.identifiers());
+        semanticNamesTypes.clear();
+        currentFunctionReturnType = null;
+        classLevel = null;
+    }
+
+    /**
+     * Also sends the semantic analyzer's events (variables added, errors) to listener.
+     */
+    @Override
+    public void setListener(ParseListener listener) {
+        super.setListener(listener);
+        semanticAnalizer.setListener(listener);
+    }
+
+    /**
+     * Also prints the semantic analyzer's errors to err.
+     */
+    @Override
+    public void setErrorStream(PrintStream err) {
+        super.setErrorStream(err);
+        semanticAnalizer.setErrorStream(err);
+    }
+
+    /**
+     * Two-phase semantic analysis: the fields and method signatures of the whole class
+     * are collected first, and then each method body is checked against all of them, so
+     * that a body can call a method, or use a field, declared below it. The output only
+     * differs from a one-phase parse's there. The bodies are parsed on the pool whenever
+     * the parse can run in parallel (see run(ForkJoinPool)), whatever the number of
+     * methods; otherwise, e.g. with a listener or with a body that does not end where its
+     * braces do, a first sequential pass collects the declarations, and the output is
+     * the same. The tokens must be a TokenBuffer: a TokenStream cannot be read twice.
+     * Off by default; kept by reset.
+     */
+    public void setTwoPhase(boolean twoPhase) {
+        this.twoPhase = twoPhase;
     }
 
+    public boolean isTwoPhase() {
+        return twoPhase;
+    }
+
+    /**
+     * The RULE_* method for each rule id that call() is given.
+     */
+    @Override
+    protected void dispatch(int rule) {
+        switch (rule) {
+            case ParseTable.METHOD       -> RULE_METHODS();
+            case ParseTable.BODY         -> RULE_BODY();
+            case ParseTable.VARIABLE     -> RULE_VARIABLE();
+            case ParseTable.ASSIGNMENT   -> RULE_ASSIGNMENT();
+            case ParseTable.CALL_METHOD  -> RULE_CALL_METHOD();
+            case ParseTable.RETURN       -> RULE_RETURN();
+            case ParseTable.PRINT        -> RULE_PRINT();
+            case ParseTable.IF           -> RULE_IF();
+            case ParseTable.WHILE        -> RULE_WHILE();
+            case ParseTable.DO_WHILE     -> RULE_DO_WHILE();
+            case ParseTable.FOR          -> RULE_FOR();
+            case ParseTable.SWITCH       -> RULE_SWITCH();
+            case ParseTable.PARAMS       -> RULE_PARAMS();
+            case ParseTable.PARAM_VALUES -> RULE_PARAM_VALUES();
+            case ParseTable.EXPRESSION   -> RULE_EXPRESSION();
+            case ParseTable.TYPE         -> RULE_TYPE();
+            default -> super.dispatch(rule);
+        }
+    }
+
+    /**
+     * Parses the tokens. Method bodies are parsed in parallel on the common pool when
+     * the tokens are a TokenBuffer, no listener is set and the class has at least
+     * PARALLEL_METHODS of them; the output is the same either way. In two-phase mode
+     * (see setTwoPhase) they are whatever their number.
+     */
     public int run() {
+        if (tree != null) tree.reset(tokens);
+        int[] bodies = methodBodies();
+        if (bodies == null
+                || !twoPhase && (bodies.length / 2 < PARALLEL_METHODS
+                        || ForkJoinPool.getCommonPoolParallelism() < 2)
+                || !parseInParallel(ForkJoinPool.commonPool(), bodies)) {
+            parseSequentially();
+        }
+        return finish();
+    }
+
+    /**
+     * Parses the tokens, with the method bodies in parallel on the given pool whenever
+     * the tokens are a TokenBuffer and no listener is set. The output is the same as
+     * a sequential parse's, but in two-phase mode (see setTwoPhase).
+     */
+    public int run(ForkJoinPool pool) {
+        if (tree != null) tree.reset(tokens);
+        int[] bodies = methodBodies();
+        if (bodies == null || !parseInParallel(pool, bodies)) {
+            parseSequentially();
+        }
+        return finish();
+    }
+
+    /**
+     * Parses the tokens with this thread only. In two-phase mode, a first pass, whose
+     * output is thrown away, collects the class-level declarations, and each method body
+     * is then checked against all of them (see enterMethod).
+     *
+     * @throws IllegalStateException in two-phase mode, if the tokens are not a TokenBuffer
+     */
+    protected void parseSequentially() {
+        if (!twoPhase) {
+            parseProgram();
+            return;
+        }
+        if (!(tokens instanceof TokenBuffer)) {
+            throw new IllegalStateException("Two-phase mode needs a TokenBuffer: a TokenStream cannot be read twice");
+        }
+        TheParser pass = newParser(tokens);
+        pass.setErrorStream(new PrintStream(OutputStream.nullOutputStream()));
+        pass.currentToken = currentToken;
+        try {
+            pass.parseProgram();
+        } catch (RuntimeException e) {
+            // This parse fails the same way; what was declared before still counts
+        }
+        classTable = pass.semanticAnalizer;
+        try {
+            parseProgram();
+        } finally {
+            classTable = null;
+        }
+    }
+
+    /**
+     * Parses the tokens, from the current one, with this parser's engine.
+     */
+    protected void parseProgram() {
         RULE_PROGRAM();
+    }
+
+    /**
+     * A new parser for tokens with the same engine as this one.
+     */
+    protected TheParser newParser(TokenSource tokens) {
+        return new TheParser(tokens);
+    }
+
+    protected int finish() {
+        listener.done();
         semanticAnalizer.printSymbolTable();
 
         int semErrors = semanticAnalizer.getErrorCount();
         if (errorCount > 0 || semErrors > 0) {
-            System.err.println("Errors found: " + errorCount + " syntax, " + semErrors + " semantic");
+            errors().println("Errors found: " + errorCount + " syntax, " + semErrors + " semantic");
         } else {
             System.out.println("Parsed Successfully");
         }
         return errorCount;
     }
 
+    // ------------------------------------------------------------
+    // Parallel parse
+    //   A method body only depends on what the class declared before it (fields and
+    //   methods, its own included) and on the locals of earlier methods with the same
+    //   name and return type, which share its scope name. So the class level is parsed
+    //   first with the bodies skipped, and then each group of same-scope methods is
+    //   parsed on the pool by a parser of its own. Errors are buffered, and the
+    //   declarations are replayed, tree parts grafted and errors printed in source order.
+    //   If any part does not end where the brace matching said it would, e.g. after an
+    //   error, or throws, everything is thrown away and the tokens are parsed sequentially.
+    //   In two-phase mode, the class-level declarations are the global table, which no
+    //   longer changes once the class level is parsed, and every body sees all of them.
+    //   The sequential parse it falls back to gets them from a first pass of its own.
+    // ------------------------------------------------------------
+
+    // State of the class-level pass of a parallel parse
+    private static final class ClassLevel {
+        final int[] bodies;
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        final List<MethodBody> methods = new ArrayList<>();
+        int next;
+        boolean failed;
+
+        ClassLevel(int[] bodies) {
+            this.bodies = bodies;
+        }
+    }
+
+    // A method body left for the pool, and what parsing it produced
+    private static final class MethodBody {
+        final String name;
+        final String type;
+        final Vector<Vector<String>> params;
+        final int open;
+        final int close;
+        final int visible;
+        final int errorsAt;
+        final int node;
+
+        SemanticAnalizer analyzer;
+        int declaredFrom;
+        int declaredTo;
+        int semanticErrors;
+        String errors;
+        SyntaxTree block;
+        boolean ended;
+
+        MethodBody(String name, String type, Vector<Vector<String>> params, int open, int close,
+                   int visible, int errorsAt, int node) {
+            this.name = name;
+            this.type = type;
+            this.params = params;
+            this.open = open;
+            this.close = close;
+            this.visible = visible;
+            this.errorsAt = errorsAt;
+            this.node = node;
+        }
+    }
+
+    /**
+     * Brace matching pre-pass: the token indexes of the '{' and '}' of every block
+     * directly inside the class, in pairs, which are the method bodies; null if the
+     * parse cannot run in parallel (a listener is set or the tokens are a stream).
+     */
+    private int[] methodBodies() {
+        if (listener != ParseListener.NONE || currentToken != 0
+                || !(tokens instanceof TokenBuffer buffer)) {
+            return null;
+        }
+        int[] pairs = new int[64];
+        int count = 0;
+        int depth = 0;
+        for (int i = 0, n = buffer.size(); i < n; i++) {
+            if (buffer.length(i) != 1) continue;
+            if (buffer.valueEquals(i, "{")) {
+                if (depth == 1) {
+                    if (count == pairs.length) pairs = Arrays.copyOf(pairs, count * 2);
+                    pairs[count] = i;
+                }
+                depth++;
+            } else if (buffer.valueEquals(i, "}")) {
+                depth--;
+                if (depth == 1) {
+                    pairs[count + 1] = i;
+                    count += 2;
+                } else if (depth < 0) {
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    private boolean parseInParallel(ForkJoinPool pool, int[] bodies) {
+        // The tasks share the names, which they read without locking once frozen
+        tokens.identifiers().freeze();
+        TheParser outer = new TheParser(tokens);
+        ClassLevel level = new ClassLevel(bodies);
+        outer.classLevel = level;
+        outer.setErrorStream(new PrintStream(level.errors, false, StandardCharsets.UTF_8));
+        outer.setTree(tree);
+        try {
+            outer.RULE_PROGRAM();
+        } catch (RuntimeException e) {
+            // Let the sequential parse print what comes before it and fail the same way
+            level.failed = true;
+        }
+        if (level.failed) {
+            if (tree != null) tree.reset(tokens);
+            return false;
+        }
+
+        // Methods sharing a scope name go to the same task, in order
+        Map<String, List<MethodBody>> groups = new LinkedHashMap<>();
+        for (MethodBody m : level.methods) {
+            groups.computeIfAbsent(m.name + "@" + m.type, k -> new ArrayList<>()).add(m);
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        SemanticAnalizer globals = outer.semanticAnalizer;
+        for (List<MethodBody> group : groups.values()) {
+            tasks.add(pool.submit(() -> parseBodies(group, globals)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                // m.ended stays false
+            }
+        }
+        for (MethodBody m : level.methods) {
+            if (!m.ended) {
+                if (tree != null) tree.reset(tokens);
+                return false;
+            }
+        }
+
+        // Put the parts together in source order
+        PrintStream err = errors();
+        byte[] classErrors = level.errors.toByteArray();
+        int declared = 0;
+        int errorsAt = 0;
+        for (MethodBody m : level.methods) {
+            semanticAnalizer.replay(globals, declared, m.visible, 0);
+            err.print(new String(classErrors, errorsAt, m.errorsAt - errorsAt, StandardCharsets.UTF_8));
+            semanticAnalizer.replay(m.analyzer, m.declaredFrom, m.declaredTo, m.semanticErrors);
+            err.print(m.errors);
+            if (tree != null) tree.graft(m.node, m.block);
+            declared = m.visible;
+            errorsAt = m.errorsAt;
+        }
+        semanticAnalizer.replay(globals, declared, globals.declarations(), globals.getErrorCount());
+        err.print(new String(classErrors, errorsAt, classErrors.length - errorsAt, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Task body: parses one group's method bodies with a parser of its own.
+     */
+    private void parseBodies(List<MethodBody> group, SemanticAnalizer globals) {
+        TheParser parser = new TheParser(tokens);
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        parser.setErrorStream(new PrintStream(errors, false, StandardCharsets.UTF_8));
+        SemanticAnalizer analyzer = parser.semanticAnalizer;
+        for (MethodBody m : group) {
+            analyzer.setGlobals(globals, twoPhase ? globals.declarations() : m.visible);
+            if (tree != null) {
+                m.block = new SyntaxTree();
+                m.block.reset(tokens);
+                parser.setTree(m.block);
+            }
+            int errorsFrom = errors.size();
+            int semanticFrom = analyzer.getErrorCount();
+            m.declaredFrom = analyzer.declarations();
+            parser.currentToken = m.open;
+            parser.semanticNamesTypes = m.params;
+            parser.methodBody(m.name, m.type);
+            m.ended = parser.currentToken == m.close + 1;
+            m.analyzer = analyzer;
+            m.declaredTo = analyzer.declarations();
+            m.semanticErrors = analyzer.getErrorCount() - semanticFrom;
+            m.errors = new String(errors.toByteArray(), errorsFrom, errors.size() - errorsFrom,
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Class-level pass: records the body starting at the current token for the pool
+     * and moves past it. If it is not one the brace matching found, the parse falls
+     * back to sequential and the body is parsed here.
+     */
+    private void deferBody(String methodName, String methodType) {
+        ClassLevel level = classLevel;
+        int[] bodies = level.bodies;
+        while (level.next < bodies.length && bodies[level.next] < currentToken) {
+            level.next += 2;
+        }
+        if (level.failed || level.next == bodies.length || bodies[level.next] != currentToken) {
+            level.failed = true;
+            methodBody(methodName, methodType);
+            return;
+        }
+        int close = bodies[level.next + 1];
+        level.methods.add(new MethodBody(methodName, methodType, new Vector<>(semanticNamesTypes),
+                currentToken, close, semanticAnalizer.declarations(), level.errors.size(),
+                tree != null ? tree.current() : SyntaxTree.NONE));
+        semanticNamesTypes.clear();
+        currentToken = close + 1;
+    }
+
     // ------------------------------------------------------------
     // RULE_PROGRAM
     //   - class <ID> { (method-decl | var-decl)* }
@@ -51,43 +452,53 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_PROGRAM() {
         enterRule("RULE_PROGRAM");
+        open(NodeKind.PROGRAM);
         try {
             expectValue("class", "RULE_PROGRAM");
             expectIdentifier("RULE_PROGRAM");        // class name
             expectValue("{", "RULE_PROGRAM");
 
-            while (currentToken < tokens.size()
-                    && !peekValue().equals("}")) {
+            while (tokens.has(currentToken)
+                    && !peekIs("}")) {
 
                 if (isType(peekValue())) {
                     // Save start position:
-                    int startTok = currentToken;
+                    int startTok = mark();
+                    // Only looking ahead: leave the type and name out of the tree
+                    SyntaxTree building = tree;
+                    tree = null;
 
                     // Parse a type (could be return type or var type)
-                    call(this::RULE_TYPE, "type");
+                    call(ParseTable.TYPE);
 
                     // Next token must be an identifier (either method name or var name)
-                    String name = tokens.get(currentToken).getValue();
+                    String name = tokens.value(currentToken);
                     expectIdentifier("RULE_PROGRAM");
+                    tree = building;
 
                     // If next token is "(", it’s a method declaration; otherwise variable
-                    if (currentToken < tokens.size()
-                            && peekValue().equals("(")) {
+                    if (tokens.has(currentToken)
+                            && peekIs("(")) {
                         // Reset back to “startTok” so RULE_METHODS sees the type again
-                        currentToken = startTok;
-                        call(this::RULE_METHODS, "method");
+                        reset(startTok);
+                        call(ParseTable.METHOD);
                     } else {
                         // Reset back to startTok so RULE_VARIABLE sees the type again
-                        currentToken = startTok;
-                        call(this::RULE_VARIABLE, "variable");
+                        reset(startTok);
+                        call(ParseTable.VARIABLE);
                         expectValue(";", "RULE_PROGRAM");
                     }
                 } else {
+                    int before = currentToken;
                     error("RULE_PROGRAM", "method or variable declaration");
+                    // error() keeps SYNC tokens such as a stray ';' or ')'; skip it here,
+                    // there is no enclosing rule at class level to consume it
+                    if (currentToken == before) currentToken++;
                 }
             }
             expectValue("}", "RULE_PROGRAM");
         } finally {
+            close();
             exitRule();
         }
     }
@@ -98,66 +509,116 @@ public class TheParser extends ParserUtils {
 // ------------------------------------------------------------
     private void RULE_METHODS() {
         enterRule("RULE_METHODS");
+        open(NodeKind.METHOD);
         try {
             // 1) Parse return type
             String methodType = peekValue();
-            call(this::RULE_TYPE, "type");
+            call(ParseTable.TYPE);
 
             // 2) Parse method name (identifier)
-            String methodName = tokens.get(currentToken).getValue();
+            String methodName = tokens.value(currentToken);
             expectIdentifier("RULE_METHODS");
 
             // 3) Parse parameter list into semanticNamesTypes (Vector of [paramName, paramType])
             expectValue("(", "RULE_METHODS");
-            if (!peekValue().equals(")")) {
-                call(this::RULE_PARAMS, "params");
+            open(NodeKind.PARAMS);
+            if (!peekIs(")")) {
+                call(ParseTable.PARAMS);
             }
+            close();
             expectValue(")", "RULE_METHODS");
 
-            // ───────────────────────────────────────────────────────────────
-            // 4a) BEFORE entering the method’s local scope, register METHOD in the semantic analyzer.
-            //     Extract just the parameter‐type list, in order.
-            List<String> signatureTypes = new ArrayList<>();
-            for (Vector<String> pair : semanticNamesTypes) {
-                signatureTypes.add(pair.get(1));  // pair.get(1) is the paramType string
+            registerMethod(methodName, methodType);
+
+            if (classLevel != null) {
+                deferBody(methodName, methodType);
+            } else {
+                methodBody(methodName, methodType);
             }
+        } finally {
+            close();
+            exitRule();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Method body, from the parameters' scope to the closing “}”
+    // ------------------------------------------------------------
+    private void methodBody(String methodName, String methodType) {
+        enterMethod(methodName, methodType);
+
+        // 8) Parse method body
+        open(NodeKind.BLOCK);
+        expectValue("{", "RULE_METHODS");
+        while (tokens.has(currentToken) && !peekIs("}")) {
+            call(ParseTable.BODY);
+        }
+        expectValue("}", "RULE_METHODS");
+        close();
 
-            // Register the method’s signature via a helper in SemanticAnalizer:
-            semanticAnalizer.registerMethod(methodName, methodType, signatureTypes);
-            // ───────────────────────────────────────────────────────────────
+        exitMethod();
+    }
 
-            // 5) Enter the “function” group scope (once per class)
-            semanticAnalizer.enterScope("function");
+    /**
+     * Registers the method whose parameters RULE_PARAMS just collected, before its
+     * body's scope is entered.
+     */
+    protected void registerMethod(String methodName, String methodType) {
+        // ───────────────────────────────────────────────────────────────
+        // 4a) BEFORE entering the method’s local scope, register METHOD in the semantic analyzer.
+        //     Extract just the parameter‐type list, in order.
+        List<String> signatureTypes = new ArrayList<>();
+        for (Vector<String> pair : semanticNamesTypes) {
+            signatureTypes.add(pair.get(1));  // pair.get(1) is the paramType string
+        }
 
-            // 6) Enter the method’s own scope
-            currentFunctionReturnType = methodType;
-            String methodScope = methodName + "@" + methodType;
-            semanticAnalizer.enterScope(methodScope);
+        // Register the method’s signature via a helper in SemanticAnalizer:
+        semanticAnalizer.registerMethod(methodName, methodType, signatureTypes);
+        // ───────────────────────────────────────────────────────────────
+    }
 
-            // 7) Insert parameters into the method’s new scope as VARIABLES
-            for (Vector<String> pair : semanticNamesTypes) {
-                String paramName = pair.get(0);
-                String paramType = pair.get(1);
-                semanticAnalizer.checkVariable(paramName, paramType, "");
-            }
-            // Clear out for the next method
-            semanticNamesTypes.clear();
+    /**
+     * Enters the scopes of a method body and declares its parameters.
+     */
+    protected void enterMethod(String methodName, String methodType) {
+        // Types left over from earlier code must not reach this body
+        semanticAnalizer.clearExpressionTypes();
 
-            // 8) Parse method body
-            expectValue("{", "RULE_METHODS");
-            while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                call(this::RULE_BODY, "body");
-            }
-            expectValue("}", "RULE_METHODS");
+        // Two-phase: the body sees the whole class, as on the pool
+        if (classTable != null) {
+            semanticAnalizer.setGlobals(classTable, classTable.declarations());
+        }
 
-            // 9) Exit the method’s own scope
-            semanticAnalizer.exitScope();
-            currentFunctionReturnType = null;
+        // 5) Enter the “function” group scope (once per class)
+        semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_FUNCTION, 0);
 
-            // 10) Exit the “function” group scope
-            semanticAnalizer.exitScope();
-        } finally {
-            exitRule();
+        // 6) Enter the method’s own scope
+        currentFunctionReturnType = methodType;
+        semanticAnalizer.enterMethodScope(tokens.identifiers().intern(methodName), methodType);
+
+        // 7) Insert parameters into the method’s new scope as VARIABLES
+        for (Vector<String> pair : semanticNamesTypes) {
+            String paramName = pair.get(0);
+            String paramType = pair.get(1);
+            semanticAnalizer.checkVariable(paramName, paramType, "");
+        }
+        // Clear out for the next method
+        semanticNamesTypes.clear();
+    }
+
+    /**
+     * Leaves the scopes enterMethod entered.
+     */
+    protected void exitMethod() {
+        // 9) Exit the method’s own scope
+        semanticAnalizer.exitScope();
+        currentFunctionReturnType = null;
+
+        // 10) Exit the “function” group scope
+        semanticAnalizer.exitScope();
+
+        if (classTable != null) {
+            semanticAnalizer.setGlobals(null, 0);
         }
     }
 
@@ -172,16 +633,18 @@ public class TheParser extends ParserUtils {
         enterRule("RULE_PARAMS");
         try {
             // If next token is “)”, then params are empty
-            if (peekValue().equals(")")) {
+            if (peekIs(")")) {
                 return;
             }
 
             // Parse first parameter
+            open(NodeKind.PARAM);
             String paramType = peekValue();
-            call(this::RULE_TYPE, "type");
+            call(ParseTable.TYPE);
 
-            String paramName = tokens.get(currentToken).getValue();
+            String paramName = tokens.value(currentToken);
             expectIdentifier("RULE_PARAMS");
+            close();
 
             Vector<String> pair = new Vector<>();
             pair.add(paramName);
@@ -189,12 +652,14 @@ public class TheParser extends ParserUtils {
             semanticNamesTypes.add(pair);
 
             // Zero or more “, <type> <id>”
-            while (currentToken < tokens.size() && peekValue().equals(",")) {
+            while (tokens.has(currentToken) && peekIs(",")) {
                 expectValue(",", "RULE_PARAMS");
+                open(NodeKind.PARAM);
                 paramType = peekValue();
-                call(this::RULE_TYPE, "type");
-                paramName = tokens.get(currentToken).getValue();
+                call(ParseTable.TYPE);
+                paramName = tokens.value(currentToken);
                 expectIdentifier("RULE_PARAMS");
+                close();
 
                 Vector<String> nextPair = new Vector<>();
                 nextPair.add(paramName);
@@ -213,41 +678,71 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_RETURN() {
         enterRule("RULE_RETURN");
+        open(NodeKind.RETURN);
         try {
             expectValue("return", "RULE_RETURN");
 
             // Peek next to see if it's “;” or “}”
-            String nextVal = currentToken < tokens.size() ? peekValue() : "";
+            String nextVal = tokens.has(currentToken) ? peekValue() : "";
 
             if (!nextVal.equals(";") && !nextVal.equals("}")) {
                 // Parse an expression and check its type
-                call(this::RULE_EXPRESSION, "expression");
-                String exprType = semanticAnalizer.getLastExpressionType();
-
-                if (currentFunctionReturnType == null) {
-                    semanticAnalizer.reportError(
-                            "No enclosing function return type for “return” at token " + currentToken);
-                } else if (currentFunctionReturnType.equals("void")) {
-                    semanticAnalizer.reportError(
-                            "Method declares void but return has a value (“" + exprType + "”)");
-                } else if (!exprType.equals(currentFunctionReturnType)) {
-                    semanticAnalizer.reportError(
-                            "Return‐type mismatch: expected “" + currentFunctionReturnType
-                                    + "”, found “" + exprType + "” at token " + currentToken);
-                }
+                call(ParseTable.EXPRESSION);
+                checkReturn(true);
             } else {
-                // “return;” (no expression) only valid if return type is void
-                if (currentFunctionReturnType != null && !currentFunctionReturnType.equals("void")) {
-                    semanticAnalizer.reportError(
-                            "Method declares “" + currentFunctionReturnType
-                                    + "” but return has no value at token " + currentToken);
-                }
+                checkReturn(false);
             }
         } finally {
+            close();
             exitRule();
         }
     }
 
+    /**
+     * Checks a return statement, with or without a value, against the enclosing
+     * method's return type; the value's type is taken off the type stack.
+     */
+    protected void checkReturn(boolean hasValue) {
+        if (hasValue) {
+            String exprType = semanticAnalizer.getLastExpressionType();
+
+            if (currentFunctionReturnType == null) {
+                semanticAnalizer.reportError(
+                        "No enclosing function return type for “return” at token " + currentToken);
+            } else if (currentFunctionReturnType.equals("void")) {
+                semanticAnalizer.reportError(
+                        "Method declares void but return has a value (“" + exprType + "”)");
+            } else if (!exprType.equals(currentFunctionReturnType)) {
+                semanticAnalizer.reportError(
+                        "Return‐type mismatch: expected “" + currentFunctionReturnType
+                                + "”, found “" + exprType + "” at token " + currentToken);
+            }
+        } else {
+            // “return;” (no expression) only valid if return type is void
+            if (currentFunctionReturnType != null && !currentFunctionReturnType.equals("void")) {
+                semanticAnalizer.reportError(
+                        "Method declares “" + currentFunctionReturnType
+                                + "” but return has no value at token " + currentToken);
+            }
+        }
+    }
+
+    /**
+     * Checks that the expression just parsed, whose type is taken off the type stack,
+     * has the expected type; what names it in the messages, e.g. "'if' condition".
+     */
+    protected void checkCondition(String what, String expected) {
+        String type = semanticAnalizer.getLastExpressionType();
+        if (type == null) {
+            semanticAnalizer.reportError(what + " type is null/unknown at token " + currentToken);
+        } else if (type.equals("void")) {
+            semanticAnalizer.reportError(what + " has type void (invalid) at token " + currentToken);
+        } else if (!type.equals(expected)) {
+            semanticAnalizer.reportError(what + " must be " + expected + " (found '"
+                    + type + "') at token " + currentToken);
+        }
+    }
+
     // ------------------------------------------------------------
     // RULE_DO_WHILE
     //   - do { body } while(expression);
@@ -255,42 +750,34 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_DO_WHILE() {
         enterRule("RULE_DO_WHILE");
+        open(NodeKind.DO_WHILE);
         try {
             expectValue("do", "RULE_DO_WHILE");
 
             // Enter do–while block scope
-            String doWhileScope = "doWhile@" + currentToken;
-            semanticAnalizer.enterScope(doWhileScope);
+            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_DO_WHILE, currentToken);
+            open(NodeKind.BLOCK);
             try {
                 expectValue("{", "RULE_DO_WHILE");
-                while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                    call(this::RULE_BODY, "body");
+                while (tokens.has(currentToken) && !peekIs("}")) {
+                    call(ParseTable.BODY);
                 }
                 expectValue("}", "RULE_DO_WHILE");
             } finally {
+                close();
                 semanticAnalizer.exitScope();
             }
 
             expectValue("while", "RULE_DO_WHILE");
             expectValue("(", "RULE_DO_WHILE");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
 
-            // ───────────────────────────────────────────────────────
-            // TYPE CHECK: must be boolean, not null/void/other
-            String condType = semanticAnalizer.getLastExpressionType();
-            if (condType == null) {
-                semanticAnalizer.reportError("'do-while' condition type is null/unknown at token " + currentToken);
-            } else if (condType.equals("void")) {
-                semanticAnalizer.reportError("'do-while' condition has type void (invalid) at token " + currentToken);
-            } else if (!condType.equals("boolean")) {
-                semanticAnalizer.reportError("'do-while' condition must be boolean (found '"
-                        + condType + "') at token " + currentToken);
-            }
-            // ───────────────────────────────────────────────────────
+            checkCondition("'do-while' condition", "boolean");
 
             expectValue(")", "RULE_DO_WHILE");
             expectValue(";", "RULE_DO_WHILE");
         } finally {
+            close();
             exitRule();
         }
     }
@@ -302,99 +789,98 @@ public class TheParser extends ParserUtils {
 // ------------------------------------------------------------
     private void RULE_SWITCH() {
         enterRule("RULE_SWITCH");
+        open(NodeKind.SWITCH);
         try {
             expectValue("switch", "RULE_SWITCH");
             expectValue("(", "RULE_SWITCH");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
 
-            // ───────────────────────────────────────────────────────
-            // TYPE CHECK: must be int, not null/void/other
-            String switchType = semanticAnalizer.getLastExpressionType();
-            if (switchType == null) {
-                semanticAnalizer.reportError("'switch' expression type is null/unknown at token " + currentToken);
-            } else if (switchType.equals("void")) {
-                semanticAnalizer.reportError("'switch' expression has type void (invalid) at token " + currentToken);
-            } else if (!switchType.equals("int")) {
-                semanticAnalizer.reportError("'switch' expression must be int (found '"
-                        + switchType + "') at token " + currentToken);
-            }
-            // ───────────────────────────────────────────────────────
+            checkCondition("'switch' expression", "int");
 
             expectValue(")", "RULE_SWITCH");
             expectValue("{", "RULE_SWITCH");
 
             // Each “case” clause gets its own scope
-            while (currentToken < tokens.size() && peekValue().equals("case")) {
+            while (tokens.has(currentToken) && peekIs("case")) {
+                open(NodeKind.CASE);
                 expectValue("case", "RULE_SWITCH");
-
-                // Parse case label (literal or identifier)
-                String tp = tokens.get(currentToken).getType();
-                String v  = peekValue();
-                if (Set.of("INTEGER", "OCTAL", "HEXADECIMAL", "BINARY", "STRING", "CHAR")
-                        .contains(tp) || v.equals("true") || v.equals("false")) {
-                    found("Literal: " + v);
-                    currentToken++;
-                } else if (tp.equals("ID")) {
-                    expectIdentifier("RULE_SWITCH");
-                } else {
-                    error("RULE_SWITCH", "case label (literal or identifier)");
-                    // Recover until “:”
-                    while (currentToken < tokens.size() && !peekValue().equals(":")) {
-                        currentToken++;
-                    }
-                }
-
+                caseLabel();
                 expectValue(":", "RULE_SWITCH");
 
                 // Enter a fresh scope for this case
-                String caseScope = "case@" + currentToken;
-                semanticAnalizer.enterScope(caseScope);
+                semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_CASE, currentToken);
                 try {
-                    while (currentToken < tokens.size()
-                            && !Set.of("case", "default", "}").contains(peekValue())) {
-                        call(this::RULE_BODY, "body");
+                    while (tokens.has(currentToken)
+                            && !(peekIs("case") || peekIs("default") || peekIs("}"))) {
+                        call(ParseTable.BODY);
                     }
                 } finally {
                     semanticAnalizer.exitScope();
+                    close();
                 }
             }
 
             // Optional “default:”
-            if (currentToken < tokens.size() && peekValue().equals("default")) {
+            if (tokens.has(currentToken) && peekIs("default")) {
+                open(NodeKind.DEFAULT);
                 expectValue("default", "RULE_SWITCH");
                 expectValue(":", "RULE_SWITCH");
 
-                String defaultScope = "default@" + currentToken;
-                semanticAnalizer.enterScope(defaultScope);
+                semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_DEFAULT, currentToken);
                 try {
-                    while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                        call(this::RULE_BODY, "body");
+                    while (tokens.has(currentToken) && !peekIs("}")) {
+                        call(ParseTable.BODY);
                     }
                 } finally {
                     semanticAnalizer.exitScope();
+                    close();
                 }
             }
 
             expectValue("}", "RULE_SWITCH");
         } finally {
+            close();
             exitRule();
         }
     }
 
 
+    /**
+     * The literal or identifier after “case”.
+     */
+    protected void caseLabel() {
+        TokenKind tp = peekKind();
+        String v  = peekValue();
+        if (CASE_LITERALS.contains(tp) || v.equals("true") || v.equals("false")) {
+            found("Literal: ", v);
+            leaf(NodeKind.LITERAL);
+            currentToken++;
+        } else if (tp == TokenKind.ID) {
+            expectIdentifier("RULE_SWITCH");
+        } else {
+            error("RULE_SWITCH", "case label (literal or identifier)");
+            // Recover until “:”
+            while (tokens.has(currentToken) && !peekIs(":")) {
+                currentToken++;
+            }
+        }
+    }
+
     // ------------------------------------------------------------
     // RULE_PRINT
     //   - print(expression);
     // ------------------------------------------------------------
     private void RULE_PRINT() {
         enterRule("RULE_PRINT");
+        open(NodeKind.PRINT);
         try {
             expectValue("print", "RULE_PRINT");
             expectValue("(", "RULE_PRINT");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
             expectValue(")", "RULE_PRINT");
             expectValue(";", "RULE_PRINT");
         } finally {
+            close();
             exitRule();
         }
     }
@@ -410,24 +896,25 @@ public class TheParser extends ParserUtils {
             String v = peekValue();
             switch (v) {
                 case "return" -> {
-                    call(this::RULE_RETURN, "return");
+                    call(ParseTable.RETURN);
                     expectValue(";", "RULE_BODY");
                 }
-                case "while" -> call(this::RULE_WHILE, "while");
-                case "do"    -> call(this::RULE_DO_WHILE, "doWhile");
-                case "for"   -> call(this::RULE_FOR, "for");
-                case "switch"-> call(this::RULE_SWITCH, "switch");
-                case "if"    -> call(this::RULE_IF, "if");
-                case "print" -> call(this::RULE_PRINT, "print");
+                case "while" -> call(ParseTable.WHILE);
+                case "do"    -> call(ParseTable.DO_WHILE);
+                case "for"   -> call(ParseTable.FOR);
+                case "switch"-> call(ParseTable.SWITCH);
+                case "if"    -> call(ParseTable.IF);
+                case "print" -> call(ParseTable.PRINT);
 
                 case "break", "continue" -> {
+                    leaf(v.equals("break") ? NodeKind.BREAK : NodeKind.CONTINUE);
                     currentToken++;
                     expectValue(";", "RULE_BODY");
                 }
 
                 case ";" -> {
                     // Absorb any stray semicolons
-                    while (currentToken < tokens.size() && peekValue().equals(";")) {
+                    while (tokens.has(currentToken) && peekIs(";")) {
                         currentToken++;
                     }
                 }
@@ -435,29 +922,29 @@ public class TheParser extends ParserUtils {
                 default -> {
                     if (isType(v)) {
                         // A local variable declaration inside the body
-                        call(this::RULE_VARIABLE, "variable");
+                        call(ParseTable.VARIABLE);
                         expectValue(";", "RULE_BODY");
                     }
-                    else if (peekType().equals("ID")) {
+                    else if (peekKind() == TokenKind.ID) {
                         // Could be a method call or an assignment
-                        String nxt = (currentToken + 1 < tokens.size())
-                                ? tokens.get(currentToken + 1).getValue()
+                        String nxt = (tokens.has(currentToken + 1))
+                                ? tokens.value(currentToken + 1)
                                 : "";
 
                         if (nxt.equals("(")) {
-                            call(this::RULE_CALL_METHOD, "callMethod");
+                            call(ParseTable.CALL_METHOD);
                             expectValue(";", "RULE_BODY");
                         } else if (nxt.equals("=")) {
-                            call(this::RULE_ASSIGNMENT, "assignment");
+                            call(ParseTable.ASSIGNMENT);
                             expectValue(";", "RULE_BODY");
                         } else {
                             error("RULE_BODY", "assignment or call");
                             // Skip until “;” or “}”
-                            while (currentToken < tokens.size()
-                                    && !Set.of(";", "}").contains(peekValue())) {
+                            while (tokens.has(currentToken)
+                                    && !(peekIs(";") || peekIs("}"))) {
                                 currentToken++;
                             }
-                            if (currentToken < tokens.size() && peekValue().equals(";")) {
+                            if (tokens.has(currentToken) && peekIs(";")) {
                                 currentToken++;
                             }
                             return;
@@ -482,18 +969,16 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_ASSIGNMENT() {
         enterRule("RULE_ASSIGNMENT");
+        open(NodeKind.ASSIGNMENT);
         try {
-            String assignName = tokens.get(currentToken).getValue();
+            int assignName = tokens.identifier(currentToken);
             expectIdentifier("RULE_ASSIGNMENT");
 
             // Check that variable was declared
-            if (!semanticAnalizer.lookupVariable(assignName)) {
-                semanticAnalizer.reportError(
-                        "Use of undeclared variable “" + assignName + "” at token " + currentToken);
-            }
+            checkDeclared(assignName);
 
             expectValue("=", "RULE_ASSIGNMENT");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
 
             // (Optional) Enforce assignment‐type compatibility:
             // String varType = semanticAnalizer.getDeclaredType(assignName);
@@ -502,10 +987,24 @@ public class TheParser extends ParserUtils {
             //     semanticAnalizer.reportError("Cannot assign “" + exprType + "” to “" + varType + "” variable");
             // }
         } finally {
+            close();
             exitRule();
         }
     }
 
+    /**
+     * Reports the use of a name that is not declared in any enclosing scope; true if
+     * it is declared.
+     */
+    protected boolean checkDeclared(int name) {
+        if (!semanticAnalizer.lookupVariable(name)) {
+            semanticAnalizer.reportError(
+                    "Use of undeclared variable “" + tokens.identifiers().name(name) + "” at token " + currentToken);
+            return false;
+        }
+        return true;
+    }
+
     // ------------------------------------------------------------
 // RULE_CALL_METHOD
 //   - <identifier> ( [paramValues] )
@@ -515,18 +1014,15 @@ public class TheParser extends ParserUtils {
 // ------------------------------------------------------------
     private void RULE_CALL_METHOD() {
         enterRule("RULE_CALL_METHOD");
+        open(NodeKind.CALL);
         try {
             // 1) Parse the method name (an identifier)
-            String callName = tokens.get(currentToken).getValue();
+            int callName = tokens.identifier(currentToken);
             expectIdentifier("RULE_CALL_METHOD");
 
             // 2) Verify the method was declared at all (variable names will also appear here,
             //    so we must specifically require a method‐entry via findMethod below).
-            if (!semanticAnalizer.lookupVariable(callName)) {
-                semanticAnalizer.reportError(
-                        "Call to undeclared method “" + callName + "” at token " + currentToken);
-                // Continue parsing so stream doesn’t break.
-            }
+            checkCallee(callName);
 
             // 3) Consume "("
             expectValue("(", "RULE_CALL_METHOD");
@@ -535,79 +1031,95 @@ public class TheParser extends ParserUtils {
             int beforeCount = semanticAnalizer.expressionStackSize();
 
             // 5) Parse zero or more comma‐separated expressions as arguments
-            call(this::RULE_PARAM_VALUES, "paramValues");
+            call(ParseTable.PARAM_VALUES);
 
             // 6) Consume ")"
             expectValue(")", "RULE_CALL_METHOD");
 
-            // 7) Compute how many argument‐types were pushed
-            int afterCount = semanticAnalizer.expressionStackSize();
-            int nArgs = afterCount - beforeCount;
-
-            // 8) Pop exactly nArgs types off the stack (in reverse order),
-            //    collect into a List<String>, then reverse it so index[0] is arg0.
-            List<String> actualArgTypesReversed = new ArrayList<>();
-            for (int i = 0; i < nArgs; i++) {
-                actualArgTypesReversed.add(semanticAnalizer.getLastExpressionType());
-            }
-            Collections.reverse(actualArgTypesReversed);
-
-            // 9) Look up the method’s declared signature via findMethod()
-            SymbolTableItem methodEntry = semanticAnalizer.findMethod(callName);
-            if (methodEntry == null) {
-                // If there is no methodEntry, either:
-                //  • callName was undeclared entirely (error was already reported above), or
-                //  • callName refers to a variable, not a method.
-                // In either case, skip further checks.
-                return;
-            }
+            checkCall(callName, beforeCount);
+        } finally {
+            close();
+            exitRule();
+        }
+    }
+
+    /**
+     * Reports a call to a name declared nowhere in the enclosing scopes.
+     */
+    protected void checkCallee(int callName) {
+        if (!semanticAnalizer.lookupVariable(callName)) {
+            semanticAnalizer.reportError(
+                    "Call to undeclared method “" + tokens.identifiers().name(callName) + "” at token " + currentToken);
+            // Continue parsing so stream doesn’t break.
+        }
+    }
+
+    /**
+     * Checks the arguments of a call, whose types were pushed after the type stack had
+     * beforeCount entries, against the called method's parameters, and pushes its
+     * return type in their place.
+     */
+    protected void checkCall(int callId, int beforeCount) {
+        // 7) Compute how many argument‐types were pushed
+        int afterCount = semanticAnalizer.expressionStackSize();
+        int nArgs = afterCount - beforeCount;
+
+        // 8) Pop exactly nArgs types off the stack (in reverse order),
+        //    so that index[0] is arg0.
+        int[] argTypes = new int[nArgs];
+        for (int i = nArgs - 1; i >= 0; i--) {
+            argTypes[i] = semanticAnalizer.popExpressionType();
+        }
+
+        // 9) Look up the overload that the arguments call via resolveMethod()
+        SymbolTableItem methodEntry = semanticAnalizer.resolveMethod(callId, argTypes);
+        if (methodEntry == null) {
+            // If there is no methodEntry, either:
+            //  • callName was undeclared entirely (error was already reported above), or
+            //  • callName refers to a variable, not a method.
+            // In either case, skip further checks.
+            return;
+        }
+
+        List<String> declaredParamTypes = methodEntry.getParamTypes();
+        String callName = tokens.identifiers().name(callId);
+
+        // 10) Compare argument count
+        if (declaredParamTypes.size() != nArgs) {
+            semanticAnalizer.reportError(
+                    "Method “" + callName + "” expects "
+                            + declaredParamTypes.size()
+                            + " arguments but was called with "
+                            + nArgs
+                            + " at token " + currentToken);
+            // We still compare the first minCount below.
+        }
 
-            List<String> declaredParamTypes = methodEntry.getParamTypes();
+        // 11) Compare each positional type up to minCount
+        int minCount = Math.min(declaredParamTypes.size(), nArgs);
+        for (int i = 0; i < minCount; i++) {
+            String expected = declaredParamTypes.get(i);
+            String actual   = semanticAnalizer.typeName(argTypes[i]);
 
-            // 10) Compare argument count
-            if (declaredParamTypes.size() != actualArgTypesReversed.size()) {
+            if (!expected.equals(actual)) {
                 semanticAnalizer.reportError(
-                        "Method “" + callName + "” expects "
-                                + declaredParamTypes.size()
-                                + " arguments but was called with "
-                                + actualArgTypesReversed.size()
-                                + " at token " + currentToken);
-                // We still compare the first minCount below.
-            }
-
-            // 11) Compare each positional type up to minCount
-            int minCount = Math.min(declaredParamTypes.size(), actualArgTypesReversed.size());
-            for (int i = 0; i < minCount; i++) {
-                String expected = declaredParamTypes.get(i);
-                String actual   = actualArgTypesReversed.get(i);
-
-                if (actual == null) {
-                    semanticAnalizer.reportError(
-                            "Argument " + (i+1) + " of “" + callName
-                                    + "” has no type at token " + currentToken);
-                }
-                else if (!expected.equals(actual)) {
-                    semanticAnalizer.reportError(
-                            "Argument " + (i+1) + " of “" + callName
-                                    + "” expects type “" + expected
-                                    + "” but found “" + actual + "” at token " + currentToken);
-                }
+                        "Argument " + (i+1) + " of “" + callName
+                                + "” expects type “" + expected
+                                + "” but found “" + actual + "” at token " + currentToken);
             }
-
-            // 12) Finally, push the method’s return type onto the stack so that in
-            //     an expression context (e.g. x = foo(...)), RULE_C or RULE_EXPRESSION
-            //     can see the call’s return type.  (pop the last literal/variable‐type,
-            //     if any, and replace with the method return type)
-            //
-            //    In many grammars, you always treat a call‐expression as a single atom.
-            //    If we already pushed some type during RULE_C for the identifier (rare),
-            //    we should pop it before pushing the return type.  However, in this grammar
-            //    we only push inside RULE_C once we see CALL_METHOD invoked, so here we do:
-            String returnType = methodEntry.getType();
-            semanticAnalizer.pushExpressionType(returnType);
-        } finally {
-            exitRule();
         }
+
+        // 12) Finally, push the method’s return type onto the stack so that in
+        //     an expression context (e.g. x = foo(...)), RULE_C or RULE_EXPRESSION
+        //     can see the call’s return type.  (pop the last literal/variable‐type,
+        //     if any, and replace with the method return type)
+        //
+        //    In many grammars, you always treat a call‐expression as a single atom.
+        //    If we already pushed some type during RULE_C for the identifier (rare),
+        //    we should pop it before pushing the return type.  However, in this grammar
+        //    we only push inside RULE_C once we see CALL_METHOD invoked, so here we do:
+        String returnType = methodEntry.getType();
+        semanticAnalizer.pushExpressionType(returnType);
     }
 
 
@@ -617,169 +1129,132 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_PARAM_VALUES() {
         enterRule("RULE_PARAM_VALUES");
+        open(NodeKind.ARGUMENTS);
         try {
-            if (peekValue().equals(")")) {
+            if (peekIs(")")) {
                 return;
             }
-            call(this::RULE_EXPRESSION, "expression");
-            while (currentToken < tokens.size() && peekValue().equals(",")) {
+            call(ParseTable.EXPRESSION);
+            while (tokens.has(currentToken) && peekIs(",")) {
                 expectValue(",", "RULE_PARAM_VALUES");
-                call(this::RULE_EXPRESSION, "expression");
+                call(ParseTable.EXPRESSION);
             }
         } finally {
+            close();
             exitRule();
         }
     }
 
     // ------------------------------------------------------------
-    // RULE_EXPRESSION  (and sub‐rules X, Y, R, E, A, B, C)
+    // RULE_EXPRESSION
+    //   - operand (binary-operator operand)*, by precedence climbing over
+    //     the operators in ParseTable, loosest first:
+    //       |  ||    &  &&    !(prefix)    < > == != <= >=    + -    * /    -(prefix)
+    //   All binary operators are left associative. This is the language of
+    //   the former RULE_X, RULE_Y, RULE_R, RULE_E, RULE_A, RULE_B chain: an
+    //   operand at a level takes only the operators of that level and the
+    //   ones above it, and it is checked against the same FIRST/FOLLOW sets.
     // ------------------------------------------------------------
     private void RULE_EXPRESSION() {
         enterRule("RULE_EXPRESSION");
         try {
-            call(this::RULE_X, "x");
-            while (Set.of("|", "||").contains(peekValue())) {
-                found("Operator |");
-                currentToken++;
-                call(this::RULE_X, "x");
-            }
+            expression(1);
         } finally {
             exitRule();
         }
     }
 
-    private void RULE_X() {
-        enterRule("RULE_X");
-        try {
-            call(this::RULE_Y, "y");
-            while (Set.of("&", "&&").contains(peekValue())) {
-                found("Operator &");
+    /**
+     * One operand followed by the binary operators of precedence minPrecedence or more.
+     * After an operator of precedence p, only operators of precedence p or less may
+     * follow: anything binding tighter belonged to its right operand, so if that operand
+     * was missing (and skipped by atFirst) the expression ends there.
+     */
+    private void expression(int minPrecedence) {
+        int from = nodeCount();
+        int maxPrecedence;
+        ParseTable.Operator prefix = ParseTable.prefix(terminal());
+        if (prefix != null && prefix.precedence >= minPrecedence) {
+            int count = 0;
+            do {
+                found(prefix.message);
+                open(NodeKind.UNARY);
                 currentToken++;
-                call(this::RULE_Y, "y");
+                count++;
+            } while (prefix.repeats && ParseTable.prefix(terminal()) == prefix);
+            if (atFirst(prefix.operand)) {
+                expression(prefix.precedence + 1);
             }
-        } finally {
-            exitRule();
-        }
-    }
-
-    private void RULE_Y() {
-        enterRule("RULE_Y");
-        try {
-            while (peekValue().equals("!")) {
-                found("!");
-                currentToken++;
+            while (count-- > 0) {
+                close();
             }
-            call(this::RULE_R, "R");
-        } finally {
-            exitRule();
+            maxPrecedence = prefix.precedence;
+        } else {
+            atom();
+            maxPrecedence = Integer.MAX_VALUE;
         }
-    }
 
-    private void RULE_R() {
-        enterRule("RULE_R");
-        try {
-            call(this::RULE_E, "E");
-            while (Set.of("<", ">", "==", "!=", "<=", ">=").contains(peekValue())) {
-                found("Relational op");
-                currentToken++;
-                call(this::RULE_E, "E");
+        ParseTable.Operator op;
+        while ((op = ParseTable.binary(terminal())) != null
+                && op.precedence >= minPrecedence && op.precedence <= maxPrecedence) {
+            found(op.message);
+            wrap(NodeKind.BINARY, from);
+            currentToken++;
+            if (atFirst(op.operand)) {
+                expression(op.rightAssociative ? op.precedence : op.precedence + 1);
             }
-        } finally {
-            exitRule();
+            close();
+            maxPrecedence = op.precedence;
         }
     }
 
-    private void RULE_E() {
-        enterRule("RULE_E");
-        try {
-            call(this::RULE_A, "A");
-            while (Set.of("+", "-").contains(peekValue())) {
-                found("Additive op");
-                currentToken++;
-                call(this::RULE_A, "A");
-            }
-        } finally {
-            exitRule();
+    /**
+     * literal | identifier [ ( paramValues ) ] | ( expression ), the former RULE_C,
+     * whose name its error messages keep.
+     */
+    private void atom() {
+        String v  = peekValue();
+        TokenKind tp = peekKind();
+
+        if (LITERALS.contains(tp) || v.equals("true") || v.equals("false")) {
+            found("Literal ", v);
+            leaf(NodeKind.LITERAL);
+            currentToken++;
+            // (you could push literal types here if desired)
         }
-    }
-
-    private void RULE_A() {
-        enterRule("RULE_A");
-        try {
-            call(this::RULE_B, "B");
-            while (Set.of("*", "/").contains(peekValue())) {
-                found("Mul op");
-                currentToken++;
-                call(this::RULE_B, "B");
-            }
-        } finally {
-            exitRule();
-        }
-    }
-
-    private void RULE_B() {
-        enterRule("RULE_B");
-        try {
-            if (peekValue().equals("-")) {
-                found("Unary -");
-                currentToken++;
-            }
-            call(this::RULE_C, "C");
-        } finally {
-            exitRule();
-        }
-    }
-
-    private void RULE_C() {
-        enterRule("RULE_C");
-        try {
-            String v  = peekValue();
-            String tp = peekType();
-
-            if (Set.of(
-                    "INTEGER", "OCTAL", "HEXADECIMAL", "BINARY",
-                    "STRING", "CHAR", "FLOAT"
-            ).contains(tp)
-                    || v.equals("true") || v.equals("false")) {
-                found("Literal " + v);
-                currentToken++;
-                // (you could push literal types here if desired)
-            }
-            else if (tp.equals("ID")) {
-                String identName = tokens.get(currentToken).getValue();
-                expectIdentifier("RULE_C");
-
-                // Lookup identifier’s type for future semantic checks
-                if (!semanticAnalizer.lookupVariable(identName)) {
-                    semanticAnalizer.reportError(
-                            "Use of undeclared variable “" + identName + "” at token " + currentToken);
-                } else {
-                    // ───────────────────────────────────────────────────────────────
-                    // HERE: push the declared type of this variable onto typeStack
-                    String declared = semanticAnalizer.getDeclaredType(identName);
-                    if (declared != null) {
-                        semanticAnalizer.pushExpressionType(declared);
-                    }
-                    // ───────────────────────────────────────────────────────────────
-                }
-
-                if (peekValue().equals("(")) {
-                    expectValue("(", "RULE_C");
-                    call(this::RULE_PARAM_VALUES, "paramValues");
-                    expectValue(")", "RULE_C");
-                    // (Optional) Check method-call argument count/types here
+        else if (tp == TokenKind.ID) {
+            int identName = tokens.identifier(currentToken);
+            int identToken = currentToken;
+            int from = nodeCount();
+            expectIdentifier("RULE_C");
+
+            // Lookup identifier’s type for future semantic checks
+            if (checkDeclared(identName)) {
+                // ───────────────────────────────────────────────────────────────
+                // HERE: push the declared type of this variable onto typeStack
+                String declared = semanticAnalizer.getDeclaredType(identName);
+                if (declared != null) {
+                    semanticAnalizer.pushExpressionType(declared);
                 }
+                // ───────────────────────────────────────────────────────────────
             }
-            else if (expectValue("(", "RULE_C")) {
-                call(this::RULE_EXPRESSION, "expression");
+
+            if (peekIs("(")) {
+                if (tree != null) tree.wrap(NodeKind.CALL, identToken, from);
+                expectValue("(", "RULE_C");
+                call(ParseTable.PARAM_VALUES);
                 expectValue(")", "RULE_C");
+                close();
+                // (Optional) Check method-call argument count/types here
             }
-            else {
-                error("RULE_C", "expression atom");
-                currentToken++; // consume offending token
-            }
-        } finally {
-            exitRule();
+        }
+        else if (expectValue("(", "RULE_C")) {
+            call(ParseTable.EXPRESSION);
+            expectValue(")", "RULE_C");
+        }
+        else {
+            error("RULE_C", "expression atom");
+            currentToken++; // consume offending token
         }
     }
 
@@ -803,23 +1278,25 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_VARIABLE() {
         enterRule("RULE_VARIABLE");
+        open(NodeKind.VARIABLE);
         try {
             String varType = peekValue();
-            call(this::RULE_TYPE, "type");
+            call(ParseTable.TYPE);
 
-            String varName = tokens.get(currentToken).getValue();
+            int varName = tokens.identifier(currentToken);
             expectIdentifier("RULE_VARIABLE");
 
             // Declare the new variable in the current scope:
             semanticAnalizer.checkVariable(varName, varType, "");
 
-            if (peekValue().equals("=")) {
+            if (peekIs("=")) {
                 found("=");
                 currentToken++;
-                call(this::RULE_EXPRESSION, "expression");
+                call(ParseTable.EXPRESSION);
                 // (Optional) Check that the expression’s type matches varType
             }
         } finally {
+            close();
             exitRule();
         }
     }
@@ -831,60 +1308,52 @@ public class TheParser extends ParserUtils {
 // ------------------------------------------------------------
     private void RULE_IF() {
         enterRule("RULE_IF");
+        open(NodeKind.IF);
         try {
             expectValue("if", "RULE_IF");
             expectValue("(", "RULE_IF");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
 
-            // ───────────────────────────────────────────────────────
-            // TYPE CHECK: must be boolean, not null/void/other
-            String condType = semanticAnalizer.getLastExpressionType();
-            if (condType == null) {
-                semanticAnalizer.reportError("'if' condition type is null/unknown at token " + currentToken);
-            } else if (condType.equals("void")) {
-                semanticAnalizer.reportError("'if' condition has type void (invalid) at token " + currentToken);
-            } else if (!condType.equals("boolean")) {
-                semanticAnalizer.reportError("'if' condition must be boolean (found '"
-                        + condType + "') at token " + currentToken);
-            }
-            // ───────────────────────────────────────────────────────
+            checkCondition("'if' condition", "boolean");
 
             expectValue(")", "RULE_IF");
 
             // “then” branch scope
-            String thenScope = "if@" + currentToken;
-            semanticAnalizer.enterScope(thenScope);
+            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_IF, currentToken);
             try {
-                if (peekValue().equals("{")) {
+                if (peekIs("{")) {
+                    open(NodeKind.BLOCK);
                     expectValue("{", "RULE_IF");
-                    while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                        call(this::RULE_BODY, "body");
+                    while (tokens.has(currentToken) && !peekIs("}")) {
+                        call(ParseTable.BODY);
                     }
                     expectValue("}", "RULE_IF");
+                    close();
                 } else {
-                    call(this::RULE_BODY, "body");
+                    call(ParseTable.BODY);
                 }
             } finally {
                 semanticAnalizer.exitScope();
             }
 
             // Optional “else”
-            if (currentToken < tokens.size() && peekValue().equals("else")) {
+            if (tokens.has(currentToken) && peekIs("else")) {
                 expectValue("else", "RULE_IF");
-                if (peekValue().equals("if")) {
-                    call(this::RULE_IF, "if");
+                if (peekIs("if")) {
+                    call(ParseTable.IF);
                 } else {
-                    String elseScope = "else@" + currentToken;
-                    semanticAnalizer.enterScope(elseScope);
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_ELSE, currentToken);
                     try {
-                        if (peekValue().equals("{")) {
+                        if (peekIs("{")) {
+                            open(NodeKind.BLOCK);
                             expectValue("{", "RULE_IF");
-                            while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                                call(this::RULE_BODY, "body");
+                            while (tokens.has(currentToken) && !peekIs("}")) {
+                                call(ParseTable.BODY);
                             }
                             expectValue("}", "RULE_IF");
+                            close();
                         } else {
-                            call(this::RULE_BODY, "body");
+                            call(ParseTable.BODY);
                         }
                     } finally {
                         semanticAnalizer.exitScope();
@@ -892,6 +1361,7 @@ public class TheParser extends ParserUtils {
                 }
             }
         } finally {
+            close();
             exitRule();
         }
     }
@@ -904,69 +1374,67 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_FOR() {
         enterRule("RULE_FOR");
+        open(NodeKind.FOR);
         try {
             expectValue("for", "RULE_FOR");
             expectValue("(", "RULE_FOR");
 
             // Possibly a variable declaration or assignment in the initialization
-            if (!peekValue().equals(";")) {
+            if (!peekIs(";")) {
                 if (isType(peekValue())) {
                     // Enter a short scope just for this var–decl
-                    String initVarScope = "forInit@" + currentToken;
-                    semanticAnalizer.enterScope(initVarScope);
+                    semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_FOR_INIT, currentToken);
                     try {
-                        call(this::RULE_VARIABLE, "variable");
+                        call(ParseTable.VARIABLE);
                     } finally {
                         semanticAnalizer.exitScope();
                     }
                 } else {
-                    call(this::RULE_ASSIGNMENT, "assignment");
+                    call(ParseTable.ASSIGNMENT);
                 }
+            } else {
+                leaf(NodeKind.EMPTY);
             }
             expectValue(";", "RULE_FOR");
 
             // ───────────────────────────────────────────────────────
             // Condition expression (middle clause)
-            if (!peekValue().equals(";")) {
-                call(this::RULE_EXPRESSION, "expression");
-
-                // TYPE CHECK: must be boolean, not null/void/other
-                String condType = semanticAnalizer.getLastExpressionType();
-                if (condType == null) {
-                    semanticAnalizer.reportError("'for' condition type is null/unknown at token " + currentToken);
-                } else if (condType.equals("void")) {
-                    semanticAnalizer.reportError("'for' condition has type void (invalid) at token " + currentToken);
-                } else if (!condType.equals("boolean")) {
-                    semanticAnalizer.reportError("'for' condition must be boolean (found '"
-                            + condType + "') at token " + currentToken);
-                }
+            if (!peekIs(";")) {
+                call(ParseTable.EXPRESSION);
+                checkCondition("'for' condition", "boolean");
+            } else {
+                leaf(NodeKind.EMPTY);
             }
             expectValue(";", "RULE_FOR");
             // ───────────────────────────────────────────────────────
 
             // Optional “update” assignment
-            if (!peekValue().equals(")")) {
-                call(this::RULE_ASSIGNMENT, "assignment");
+            if (!peekIs(")")) {
+                call(ParseTable.ASSIGNMENT);
+            } else {
+                leaf(NodeKind.EMPTY);
             }
             expectValue(")", "RULE_FOR");
 
             // Now the body scope
-            String forScope = "for@" + currentToken;
-            semanticAnalizer.enterScope(forScope);
+            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_FOR, currentToken);
             try {
-                if (peekValue().equals("{")) {
+                if (peekIs("{")) {
+                    open(NodeKind.BLOCK);
                     expectValue("{", "RULE_FOR");
-                    while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                        call(this::RULE_BODY, "body");
+                    while (tokens.has(currentToken) && !peekIs("}")) {
+                        call(ParseTable.BODY);
                     }
                     expectValue("}", "RULE_FOR");
+                    close();
                 } else {
-                    call(this::RULE_BODY, "body");
+                    call(ParseTable.BODY);
                 }
             } finally {
                 semanticAnalizer.exitScope();
             }
         } finally {
+            close();
             exitRule();
         }
     }
@@ -978,42 +1446,34 @@ public class TheParser extends ParserUtils {
     // ------------------------------------------------------------
     private void RULE_WHILE() {
         enterRule("RULE_WHILE");
+        open(NodeKind.WHILE);
         try {
             expectValue("while", "RULE_WHILE");
             expectValue("(", "RULE_WHILE");
-            call(this::RULE_EXPRESSION, "expression");
+            call(ParseTable.EXPRESSION);
 
-            // ───────────────────────────────────────────────────────
-            // TYPE CHECK: must be boolean, not null/void/other
-            String condType = semanticAnalizer.getLastExpressionType();
-            if (condType == null) {
-                semanticAnalizer.reportError("'while' condition type is null/unknown at token " + currentToken);
-            } else if (condType.equals("void")) {
-                semanticAnalizer.reportError("'while' condition has type void (invalid) at token " + currentToken);
-            } else if (!condType.equals("boolean")) {
-                semanticAnalizer.reportError("'while' condition must be boolean (found '"
-                        + condType + "') at token " + currentToken);
-            }
-            // ───────────────────────────────────────────────────────
+            checkCondition("'while' condition", "boolean");
 
             expectValue(")", "RULE_WHILE");
 
-            String whileScope = "while@" + currentToken;
-            semanticAnalizer.enterScope(whileScope);
+            semanticAnalizer.enterScope(SemanticAnalizer.SCOPE_WHILE, currentToken);
             try {
-                if (peekValue().equals("{")) {
+                if (peekIs("{")) {
+                    open(NodeKind.BLOCK);
                     expectValue("{", "RULE_WHILE");
-                    while (currentToken < tokens.size() && !peekValue().equals("}")) {
-                        call(this::RULE_BODY, "body");
+                    while (tokens.has(currentToken) && !peekIs("}")) {
+                        call(ParseTable.BODY);
                     }
                     expectValue("}", "RULE_WHILE");
+                    close();
                 } else {
-                    call(this::RULE_BODY, "body");
+                    call(ParseTable.BODY);
                 }
             } finally {
                 semanticAnalizer.exitScope();
             }
         } finally {
+            close();
             exitRule();
         }
     }
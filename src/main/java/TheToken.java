@@ -1,30 +1,80 @@
 /**
- * A Token is a pair of a value (string or word) and its type
+ * A Token is a pair of a value (string or word) and its type.
+ * The value is kept as an offset and a length into the source it was lexed from and is
+ * only turned into a String when someone asks for it; the type is a TokenKind.
  *
  * @author javiergs
- * @version 1.0
+ * @version 1.1
  */
 public class TheToken {
 	
+	private final CharSequence source;
+	private final int start;
+	private final int length;
+	private final TokenKind kind;
+	private final int line;
 	private String value;
-	private String type;
 	
 	public TheToken(String value, String type) {
+		this(value, type, 0);
+	}
+
+	public TheToken(String value, String type, int line) {
+		this(value, 0, value.length(), TokenKind.valueOf(type), line);
 		this.value = value;
-		this.type = type;
+	}
+
+	public TheToken(CharSequence source, int start, int length, TokenKind kind, int line) {
+		this.source = source;
+		this.start = start;
+		this.length = length;
+		this.kind = kind;
+		this.line = line;
 	}
 	
 	public String getValue() {
+		if (value == null) {
+			value = source.subSequence(start, start + length).toString();
+		}
 		return value;
 	}
 	
 	public String getType() {
-		return type;
+		return kind.name();
+	}
+
+	public TokenKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Offset of the token's first char in its source.
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Line (1-based) where the token starts, or 0 if unknown.
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Compares the token's text with s without building the value.
+	 */
+	public boolean valueEquals(String s) {
+		return Utf8Text.regionEquals(source, start, length, s);
 	}
 
 	@Override
 	public String toString() {
-		return "Token(value=" + value + ", type=" + type + ")";
+		return "Token(value=" + getValue() + ", type=" + getType() + ")";
 	}
 }
 
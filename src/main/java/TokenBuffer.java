@@ -0,0 +1,276 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Columnar storage for the tokens of one source: parallel primitive arrays for kind,
+ * start offset, length, line and, for identifiers, interned id, indexed by token
+ * position. No per-token objects are kept; values are read straight from the source,
+ * and get(i) builds a TheToken view only for callers that still want one.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class TokenBuffer implements TokenSource, TokenSink {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    // One-char values (operators, delimiters, single-letter names) are shared
+    private static final String[] SINGLE_CHARS = new String[128];
+
+    static {
+        for (char c = 0; c < SINGLE_CHARS.length; c++) {
+            SINGLE_CHARS[c] = String.valueOf(c).intern();
+        }
+    }
+
+    private CharSequence source;
+    private int[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    // Id of each ID token among identifiers, -1 for other tokens
+    private int[] ident;
+    // ParseTable terminal id of each token's text
+    private int[] terminal;
+    private final Identifiers identifiers = new Identifiers();
+    private int size;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        int n = Math.max(capacity, 16);
+        this.kind = new int[n];
+        this.start = new int[n];
+        this.length = new int[n];
+        this.line = new int[n];
+        this.ident = new int[n];
+        this.terminal = new int[n];
+    }
+
+    /**
+     * Copies a list of tokens into a buffer whose source is their values laid out one
+     * after another.
+     */
+    public static TokenBuffer of(List<TheToken> tokens) {
+        StringBuilder text = new StringBuilder();
+        TokenBuffer buffer = new TokenBuffer(text, tokens.size());
+        for (TheToken t : tokens) {
+            String value = t.getValue();
+            int start = text.length();
+            text.append(value).append(' ');
+            buffer.add(t.getKind(), start, value.length(), t.getLine());
+        }
+        return buffer;
+    }
+
+    @Override
+    public void add(TokenKind kind, int start, int length, int line) {
+        if (size == this.kind.length) {
+            grow(size + 1);
+        }
+        this.kind[size] = kind.ordinal();
+        this.start[size] = start;
+        this.length[size] = length;
+        this.line[size] = line;
+        if (kind == TokenKind.ID) {
+            int id = identifiers.intern(source, start, length);
+            this.ident[size] = id;
+            this.terminal[size] = identifiers.terminal(id);
+        } else {
+            this.ident[size] = -1;
+            this.terminal[size] = ParseTable.terminal(source, start, length);
+        }
+        size++;
+    }
+
+    /**
+     * Appends tokens [from, to) of another buffer over the same source, shifting their
+     * lines by lineDelta.
+     */
+    public void append(TokenBuffer other, int from, int to, int lineDelta) {
+        int n = to - from;
+        if (n <= 0) return;
+        if (size + n > kind.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.kind, from, kind, size, n);
+        System.arraycopy(other.start, from, start, size, n);
+        System.arraycopy(other.length, from, length, size, n);
+        System.arraycopy(other.terminal, from, terminal, size, n);
+        for (int i = 0; i < n; i++) {
+            line[size + i] = other.line[from + i] + lineDelta;
+        }
+        reintern(other, from, size, n);
+        size += n;
+    }
+
+    /**
+     * Sets the ids of tokens [to, to + n), copied from tokens [from, from + n) of other,
+     * to those of the same names here; each name is looked up once.
+     */
+    private void reintern(TokenBuffer other, int from, int to, int n) {
+        int[] ids = null;
+        for (int i = 0; i < n; i++) {
+            int id = other.ident[from + i];
+            if (id >= 0) {
+                if (ids == null) {
+                    ids = new int[other.identifiers.size()];
+                    Arrays.fill(ids, -1);
+                }
+                if (ids[id] < 0) {
+                    ids[id] = identifiers.intern(other.identifiers.name(id));
+                }
+                id = ids[id];
+            }
+            ident[to + i] = id;
+        }
+    }
+
+    /**
+     * Replaces tokens [from, to) with the tokens of another buffer after an edit of the
+     * source: the buffer switches to the edited source and the tokens after the replaced
+     * range are shifted by startDelta chars and lineDelta lines.
+     */
+    void replace(int from, int to, TokenBuffer with, CharSequence source, int startDelta, int lineDelta) {
+        int n = with.size;
+        int tail = size - to;
+        int newSize = from + n + tail;
+        if (newSize > kind.length) {
+            grow(newSize);
+        }
+        System.arraycopy(kind, to, kind, from + n, tail);
+        System.arraycopy(start, to, start, from + n, tail);
+        System.arraycopy(length, to, length, from + n, tail);
+        System.arraycopy(line, to, line, from + n, tail);
+        System.arraycopy(ident, to, ident, from + n, tail);
+        System.arraycopy(terminal, to, terminal, from + n, tail);
+        for (int i = from + n; i < newSize; i++) {
+            start[i] += startDelta;
+            line[i] += lineDelta;
+        }
+        System.arraycopy(with.kind, 0, kind, from, n);
+        System.arraycopy(with.start, 0, start, from, n);
+        System.arraycopy(with.length, 0, length, from, n);
+        System.arraycopy(with.line, 0, line, from, n);
+        System.arraycopy(with.terminal, 0, terminal, from, n);
+        reintern(with, 0, from, n);
+        size = newSize;
+        this.source = source;
+    }
+
+    private void grow(int min) {
+        int n = Math.max(min, size + (size >> 1));
+        kind = Arrays.copyOf(kind, n);
+        start = Arrays.copyOf(start, n);
+        length = Arrays.copyOf(length, n);
+        line = Arrays.copyOf(line, n);
+        ident = Arrays.copyOf(ident, n);
+        terminal = Arrays.copyOf(terminal, n);
+    }
+
+    @Override
+    public boolean has(int i) {
+        return i < size;
+    }
+
+    @Override
+    public boolean readable(int i) {
+        return i < size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Empties the buffer for the tokens of source, which takes the old source's place.
+     * The identifiers are kept: a name lexed again gets the id it had.
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        size = 0;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    @Override
+    public TokenKind kind(int i) {
+        return KINDS[kind[i]];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    @Override
+    public int line(int i) {
+        return line[i];
+    }
+
+    /**
+     * Builds the text of token i.
+     */
+    @Override
+    public String value(int i) {
+        int s = start[i];
+        if (length[i] == 1) {
+            char c = source.charAt(s);
+            if (c < SINGLE_CHARS.length) return SINGLE_CHARS[c];
+        }
+        return source.subSequence(s, s + length[i]).toString();
+    }
+
+    /**
+     * Compares the text of token i with v without building a String.
+     */
+    @Override
+    public boolean valueEquals(int i, String v) {
+        return Utf8Text.regionEquals(source, start[i], length[i], v);
+    }
+
+    @Override
+    public int identifier(int i) {
+        return ident[i] >= 0 ? ident[i] : identifiers.intern(source, start[i], length[i]);
+    }
+
+    @Override
+    public Identifiers identifiers() {
+        return identifiers;
+    }
+
+    @Override
+    public int terminal(int i) {
+        return terminal[i];
+    }
+
+    /**
+     * Token i as a standalone TheToken.
+     */
+    @Override
+    public TheToken get(int i) {
+        return new TheToken(source, start[i], length[i], kind(i), line[i]);
+    }
+
+    public Vector<TheToken> toVector() {
+        Vector<TheToken> tokens = new Vector<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(get(i));
+        }
+        return tokens;
+    }
+}
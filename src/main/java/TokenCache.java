@@ -0,0 +1,369 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of lexed tokens, keyed by a hash of the source contents, so that lexing
+ * an unchanged file again only reads back its tokens. Entries are binary: varint
+ * encoded kinds, offsets (as gaps from the previous token), lengths and lines, with the
+ * values left in the source. Entries are dropped least recently used first once the
+ * directory grows past its size limit, and all of them when the lexer's DFA (which
+ * includes the keywords) is no longer the one they were written with. Across runs,
+ * "used" is an entry file's modification time (mtime), which each hit sets to now:
+ * access times are not kept on many file systems.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class TokenCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x544f4b31; // "TOK1"
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".tok";
+    private static final String STAMP = "tables";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long tables;
+
+    // Entries in access order with their sizes, from oldest mtime when read from disk
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private int hits;
+    private int misses;
+
+    /**
+     * Tokens and line starts read back from an entry.
+     */
+    static final class Entry {
+        final TokenBuffer tokens;
+        final int[] lineStarts;
+
+        Entry(TokenBuffer tokens, int[] lineStarts) {
+            this.tokens = tokens;
+            this.lineStarts = lineStarts;
+        }
+    }
+
+    public TokenCache(Path dir) throws IOException {
+        this(dir, DEFAULT_MAX_BYTES);
+    }
+
+    public TokenCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.tables = TheLexer.tableFingerprint();
+        Files.createDirectories(dir);
+
+        Path stamp = dir.resolve(STAMP);
+        String expected = Long.toHexString(tables) + " " + FORMAT;
+        boolean current = Files.exists(stamp) && Files.readString(stamp).trim().equals(expected);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> list = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : list) files.add(file);
+        }
+        if (!current) {
+            for (Path file : files) Files.deleteIfExists(file);
+            files.clear();
+            Files.writeString(stamp, expected);
+        }
+        files.sort(Comparator.comparingLong(TokenCache::mtime));
+        for (Path file : files) {
+            long bytes = Files.size(file);
+            entries.put(file.getFileName().toString(), bytes);
+            size += bytes;
+        }
+        evict();
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Total size of the entries, in bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    // ------------------------------------------------------------
+    // Keys
+    // ------------------------------------------------------------
+
+    /**
+     * Hash of the source contents (bytes for UTF-8 sources, chars otherwise, since
+     * offsets differ between the two) together with the DFA and the format version.
+     */
+    String key(CharSequence source) {
+        MessageDigest digest = sha256();
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putLong(tables).putInt(FORMAT).put((byte) (source instanceof Utf8Text ? 'b' : 'c'));
+        digest.update(header.array());
+        if (source instanceof Utf8Text) {
+            digest.update(((Utf8Text) source).bytes());
+        } else {
+            byte[] chunk = new byte[8192];
+            int k = 0;
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                chunk[k++] = (byte) (c >> 8);
+                chunk[k++] = (byte) c;
+                if (k == chunk.length) {
+                    digest.update(chunk, 0, k);
+                    k = 0;
+                }
+            }
+            digest.update(chunk, 0, k);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Entries
+    // ------------------------------------------------------------
+
+    /**
+     * Reads the entry for key, or returns null when there is none or it cannot be used.
+     */
+    Entry load(String key, CharSequence source) {
+        String name = key + SUFFIX;
+        synchronized (this) {
+            // get() rather than containsKey() moves a hit to the end of the eviction order
+            if (entries.get(name) == null) {
+                misses++;
+                return null;
+            }
+        }
+        Path file = dir.resolve(name);
+        try {
+            Entry entry = decode(Files.readAllBytes(file), source);
+            // Marks the entry used for the next TokenCache on this directory
+            file.toFile().setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                hits++;
+            }
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or written for another source: drop it
+            remove(name);
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry for key, then evicts the least recently used entries over the limit.
+     */
+    void store(String key, TokenBuffer tokens, int[] lineStarts, int lineCount) throws IOException {
+        byte[] bytes = encode(tokens, lineStarts, lineCount);
+        if (bytes.length > maxBytes) return;
+        String name = key + SUFFIX;
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        synchronized (this) {
+            Long old = entries.put(name, (long) bytes.length);
+            size += bytes.length - (old == null ? 0 : old);
+        }
+        evict();
+    }
+
+    private void evict() throws IOException {
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+            while (size > maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> e = it.next();
+                size -= e.getValue();
+                victims.add(e.getKey());
+                it.remove();
+            }
+        }
+        for (String name : victims) {
+            Files.deleteIfExists(dir.resolve(name));
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (this) {
+            Long bytes = entries.remove(name);
+            if (bytes != null) size -= bytes;
+        }
+        try {
+            Files.deleteIfExists(dir.resolve(name));
+        } catch (IOException ignored) {
+            // Stays on disk until the next table change; it is no longer an entry
+        }
+    }
+
+    // Modification time of an entry's file, which is when it was last written or hit
+    private static long mtime(Path file) {
+        return file.toFile().lastModified();
+    }
+
+    // ------------------------------------------------------------
+    // Binary format
+    // ------------------------------------------------------------
+
+    private byte[] encode(TokenBuffer tokens, int[] lineStarts, int lineCount) {
+        VarintWriter out = new VarintWriter(16 + tokens.size() * 4 + lineCount * 2);
+        out.writeInt(MAGIC);
+        out.writeLong(tables);
+        out.writeVarint(tokens.getSource().length());
+        out.writeVarint(tokens.size());
+        out.writeVarint(lineCount);
+        int end = 0;
+        int line = 1;
+        for (int i = 0; i < tokens.size(); i++) {
+            out.writeVarint(tokens.kind(i).ordinal());
+            out.writeVarint(tokens.start(i) - end);
+            out.writeVarint(tokens.length(i));
+            out.writeVarint(tokens.line(i) - line);
+            end = tokens.start(i) + tokens.length(i);
+            line = tokens.line(i);
+        }
+        int previous = 0;
+        for (int i = 1; i < lineCount; i++) {
+            out.writeVarint(lineStarts[i] - previous);
+            previous = lineStarts[i];
+        }
+        return out.toByteArray();
+    }
+
+    private Entry decode(byte[] bytes, CharSequence source) throws IOException {
+        VarintReader in = new VarintReader(bytes);
+        if (in.readInt() != MAGIC || in.readLong() != tables || in.readVarint() != source.length()) {
+            throw new IOException("Stale token cache entry");
+        }
+        TokenKind[] kinds = TokenKind.values();
+        int count = in.readVarint();
+        int lineCount = in.readVarint();
+        TokenBuffer tokens = new TokenBuffer(source, count);
+        int end = 0;
+        int line = 1;
+        for (int i = 0; i < count; i++) {
+            TokenKind kind = kinds[in.readVarint()];
+            int start = end + in.readVarint();
+            int length = in.readVarint();
+            line += in.readVarint();
+            tokens.add(kind, start, length, line);
+            end = start + length;
+        }
+        int[] lineStarts = new int[lineCount];
+        for (int i = 1; i < lineCount; i++) {
+            lineStarts[i] = lineStarts[i - 1] + in.readVarint();
+        }
+        if (in.remaining() != 0 || end > source.length()) {
+            throw new IOException("Corrupt token cache entry");
+        }
+        return new Entry(tokens, lineStarts);
+    }
+
+    /**
+     * Unsigned LEB128 varints into a growable byte array.
+     */
+    private static final class VarintWriter {
+        private byte[] buf;
+        private int size;
+
+        VarintWriter(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        void writeVarint(int v) {
+            if (size + 5 > buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            while ((v & ~0x7F) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeInt(int v) {
+            for (int shift = 24; shift >= 0; shift -= 8) writeByte(v >>> shift);
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        private void writeByte(int b) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[size++] = (byte) b;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    private static final class VarintReader {
+        private final byte[] buf;
+        private int pos;
+
+        VarintReader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readVarint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (pos == buf.length) throw new EOFException();
+                byte b = buf[pos++];
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readInt() throws IOException {
+            if (pos + 4 > buf.length) throw new EOFException();
+            int v = 0;
+            for (int i = 0; i < 4; i++) v = (v << 8) | (buf[pos++] & 0xFF);
+            return v;
+        }
+
+        long readLong() throws IOException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int remaining() {
+            return buf.length - pos;
+        }
+    }
+}
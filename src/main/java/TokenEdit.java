@@ -0,0 +1,37 @@
+/**
+ * Result of TheLexer.edit: tokens [first, first + removed) of the buffer before the edit
+ * were replaced by tokens [first, first + inserted) after it. Tokens before first are
+ * unchanged; tokens after the range are the same, shifted to the edited offsets and lines.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class TokenEdit {
+
+    private final int first;
+    private final int removed;
+    private final int inserted;
+
+    TokenEdit(int first, int removed, int inserted) {
+        this.first = first;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenEdit(first=" + first + ", removed=" + removed + ", inserted=" + inserted + ")";
+    }
+}
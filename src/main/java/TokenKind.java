@@ -0,0 +1,21 @@
+/**
+ * Kinds of tokens produced by TheLexer. The constant names are the type strings
+ * reported by TheToken.getType().
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public enum TokenKind {
+	ID,
+	KEYWORD,
+	INTEGER,
+	FLOAT,
+	BINARY,
+	OCTAL,
+	HEXADECIMAL,
+	CHAR,
+	STRING,
+	OPERATOR,
+	DELIMITER,
+	ERROR
+}
@@ -0,0 +1,11 @@
+/**
+ * Receives tokens from TheLexer as they are recognized.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public interface TokenSink {
+
+    void add(TokenKind kind, int start, int length, int line);
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Read access to a sequence of tokens by absolute index, as used by ParserUtils.
+ * Implemented by TokenBuffer (all tokens in memory) and TokenStream (tokens lexed on
+ * demand into a bounded window).
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public interface TokenSource {
+
+    /**
+     * True if there is a token at index i; a stream lexes ahead as needed to answer.
+     */
+    boolean has(int i);
+
+    /**
+     * True if token i can be read: there is a token at index i and, in a stream, it has
+     * not fallen out of the window.
+     */
+    boolean readable(int i);
+
+    TokenKind kind(int i);
+
+    String value(int i);
+
+    boolean valueEquals(int i, String v);
+
+    /**
+     * Id among identifiers() of the text of token i: the same for every token with the
+     * same text. Identifier tokens are interned as they are lexed; any other token used
+     * as a name (in input with errors) is interned when asked for.
+     */
+    int identifier(int i);
+
+    /**
+     * The names interned for these tokens.
+     */
+    Identifiers identifiers();
+
+    int line(int i);
+
+    /**
+     * ParseTable terminal id of the text of token i, or ParseTable.NONE; found once, as
+     * the token is lexed.
+     */
+    int terminal(int i);
+
+    TheToken get(int i);
+
+    /**
+     * Keeps token i and everything after it available until release(i) is called,
+     * so the reader can come back to it. Returns i.
+     */
+    default int mark(int i) {
+        return i;
+    }
+
+    default void release(int mark) {
+    }
+
+}
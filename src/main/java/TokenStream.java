@@ -0,0 +1,235 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull-based token source: tokens are lexed on demand by TheLexer and kept in a ring
+ * buffer, so memory stays bounded by the lookahead window instead of the file size.
+ * Indexes are absolute (as in TokenBuffer). Tokens that fell out of the window can no
+ * longer be read; mark(i) pins a position for backtracking and the window grows rather
+ * than drop a pinned token.
+ * It is also an Iterator over TheToken with peek(k) for consumers other than the parser.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class TokenStream implements TokenSource, TokenSink, Iterator<TheToken> {
+
+    public static final int DEFAULT_WINDOW = 64;
+
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    private final TheLexer lexer;
+    private final CharSequence source;
+
+    // Ring of the last lexed tokens, slot = index & mask
+    private int[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    // Id of each ID token among identifiers, -1 for other tokens
+    private int[] ident;
+    // ParseTable terminal id of each token's text
+    private int[] terminal;
+    private final Identifiers identifiers = new Identifiers();
+    private int mask;
+
+    private int base;       // oldest index still in the window
+    private int count;      // tokens lexed so far
+    private boolean exhausted;
+
+    private int[] marks = new int[8];
+    private int markCount;
+
+    private int cursor;     // iterator position
+
+    TokenStream(TheLexer lexer, CharSequence source, int window) {
+        this.lexer = lexer;
+        this.source = source;
+        int n = Integer.highestOneBit(Math.max(window, 4) - 1) << 1;
+        this.kind = new int[n];
+        this.start = new int[n];
+        this.length = new int[n];
+        this.line = new int[n];
+        this.ident = new int[n];
+        this.terminal = new int[n];
+        this.mask = n - 1;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * Current capacity of the window.
+     */
+    public int getWindow() {
+        return mask + 1;
+    }
+
+    @Override
+    public void add(TokenKind kind, int start, int length, int line) {
+        if (count - base > mask) {
+            if (lowestMark() <= base) {
+                grow();
+            } else {
+                base++;
+            }
+        }
+        int slot = count & mask;
+        this.kind[slot] = kind.ordinal();
+        this.start[slot] = start;
+        this.length[slot] = length;
+        this.line[slot] = line;
+        if (kind == TokenKind.ID) {
+            int id = identifiers.intern(source, start, length);
+            this.ident[slot] = id;
+            this.terminal[slot] = identifiers.terminal(id);
+        } else {
+            this.ident[slot] = -1;
+            this.terminal[slot] = ParseTable.terminal(source, start, length);
+        }
+        count++;
+    }
+
+    private int lowestMark() {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < markCount; i++) {
+            lowest = Math.min(lowest, marks[i]);
+        }
+        return lowest;
+    }
+
+    private void grow() {
+        int n = (mask + 1) * 2;
+        int[] k = new int[n], s = new int[n], l = new int[n], ln = new int[n], id = new int[n], t = new int[n];
+        for (int i = base; i < count; i++) {
+            k[i & (n - 1)] = kind[i & mask];
+            s[i & (n - 1)] = start[i & mask];
+            l[i & (n - 1)] = length[i & mask];
+            ln[i & (n - 1)] = line[i & mask];
+            id[i & (n - 1)] = ident[i & mask];
+            t[i & (n - 1)] = terminal[i & mask];
+        }
+        kind = k;
+        start = s;
+        length = l;
+        line = ln;
+        ident = id;
+        terminal = t;
+        mask = n - 1;
+    }
+
+    @Override
+    public boolean has(int i) {
+        while (i >= count && !exhausted) {
+            exhausted = !lexer.advance(this);
+        }
+        return i < count;
+    }
+
+    @Override
+    public boolean readable(int i) {
+        return i >= base && has(i);
+    }
+
+    private int slot(int i) {
+        if (i < base || !has(i)) {
+            throw new IllegalStateException("Token " + i + " is outside the window [" + base + ", " + count + ")");
+        }
+        return i & mask;
+    }
+
+    @Override
+    public TokenKind kind(int i) {
+        return KINDS[kind[slot(i)]];
+    }
+
+    @Override
+    public int line(int i) {
+        return line[slot(i)];
+    }
+
+    @Override
+    public String value(int i) {
+        int s = slot(i);
+        return source.subSequence(start[s], start[s] + length[s]).toString();
+    }
+
+    @Override
+    public boolean valueEquals(int i, String v) {
+        int s = slot(i);
+        return Utf8Text.regionEquals(source, start[s], length[s], v);
+    }
+
+    @Override
+    public int identifier(int i) {
+        int s = slot(i);
+        return ident[s] >= 0 ? ident[s] : identifiers.intern(source, start[s], length[s]);
+    }
+
+    @Override
+    public Identifiers identifiers() {
+        return identifiers;
+    }
+
+    @Override
+    public int terminal(int i) {
+        return terminal[slot(i)];
+    }
+
+    @Override
+    public TheToken get(int i) {
+        int s = slot(i);
+        return new TheToken(source, start[s], length[s], KINDS[kind[s]], line[s]);
+    }
+
+    @Override
+    public int mark(int i) {
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, markCount * 2);
+        }
+        marks[markCount++] = i;
+        return i;
+    }
+
+    @Override
+    public void release(int mark) {
+        for (int i = markCount - 1; i >= 0; i--) {
+            if (marks[i] == mark) {
+                marks[i] = marks[--markCount];
+                return;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Iterator view
+    // ------------------------------------------------------------
+
+    @Override
+    public boolean hasNext() {
+        return has(cursor);
+    }
+
+    @Override
+    public TheToken next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return get(cursor++);
+    }
+
+    /**
+     * The token k positions after the next one (peek(0) is what next() returns),
+     * or null past the end.
+     */
+    public TheToken peek(int k) {
+        int i = cursor + k;
+        int needed = k + 2;
+        if (needed > mask + 1) {
+            mark(cursor);
+            has(i);
+            release(cursor);
+        }
+        return has(i) ? get(i) : null;
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.PrintStream;
+
+/**
+ * ParseListener that prints the parse tree the way the parser always has: "- RULE" on
+ * entering a rule, "-- message" for what was found in it, indented two spaces per
+ * level, and "Added variable: ..." for each declaration. Lines are collected in a
+ * buffer and written in blocks; the buffer is flushed before every error so that the
+ * trace and System.err stay in order, and when the parse is done.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class TreePrinter implements ParseListener {
+
+    private static final int FLUSH_AT = 1 << 16;
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_AT + 256);
+    private int indent;
+
+    public TreePrinter() {
+        this(System.out);
+    }
+
+    public TreePrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void enterRule(String rule) {
+        line().append("- ").append(rule).append('\n');
+        indent++;
+        flushIfFull();
+    }
+
+    @Override
+    public void exitRule() {
+        indent = Math.max(0, indent - 1);
+    }
+
+    @Override
+    public void token(String message) {
+        line().append("-- ").append(message).append('\n');
+        flushIfFull();
+    }
+
+    @Override
+    public void error(String message) {
+        flush();
+    }
+
+    @Override
+    public void variable(String id, String type, String scope, String value) {
+        buffer.append("Added variable: ").append(id)
+                .append(" of type ").append(type)
+                .append(" in scope ").append(scope)
+                .append(" with value ").append(value)
+                .append('\n');
+        flushIfFull();
+    }
+
+    @Override
+    public void done() {
+        flush();
+    }
+
+    /**
+     * Writes out the buffered lines.
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.print(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+
+    private StringBuilder line() {
+        for (int i = 0; i < indent; i++) {
+            buffer.append("  ");
+        }
+        return buffer;
+    }
+
+    private void flushIfFull() {
+        if (buffer.length() >= FLUSH_AT) {
+            flush();
+        }
+    }
+}
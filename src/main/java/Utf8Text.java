@@ -0,0 +1,130 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoded text seen as a CharSequence of its bytes: charAt(i) is byte i as a char
+ * in 0..255, so ASCII reads as itself and every byte of a multi-byte sequence is >= 0x80.
+ * Offsets and lengths are byte counts. Only subSequence and toString decode, which is
+ * what token values need; the lexer reads the bytes straight from the (mapped) buffer.
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public final class Utf8Text implements CharSequence {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+
+    private final ByteBuffer bytes;
+
+    /**
+     * Wraps the bytes between the buffer's position and limit; the buffer is not changed.
+     */
+    public Utf8Text(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    /**
+     * Decodes bytes [start, end).
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return StandardCharsets.UTF_8.decode(bytes.slice(start, end - start)).toString();
+    }
+
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+    }
+
+    /**
+     * The bytes, as a read-only view of their own.
+     */
+    ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    /**
+     * Number of UTF-16 chars the bytes [start, end) decode to.
+     */
+    public int charCount(int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            int b = bytes.get(i) & 0xFF;
+            if ((b & 0xC0) != 0x80) count++;
+            if (b >= 0xF0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Compares the text of bytes [start, start + length) with s.
+     */
+    public boolean regionEquals(int start, int length, String s) {
+        if (s.length() > length) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) return subSequence(start, start + length).toString().equals(s);
+            if (i >= length || bytes.get(start + i) != c) return false;
+        }
+        return s.length() == length;
+    }
+
+    /**
+     * Compares a token's text in any source with s, without building the token's value.
+     */
+    static boolean regionEquals(CharSequence source, int start, int length, String s) {
+        if (source instanceof Utf8Text) {
+            return ((Utf8Text) source).regionEquals(start, length, s);
+        }
+        if (s.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------
+    // Word at a time scanning (SWAR)
+    // ------------------------------------------------------------
+
+    /**
+     * Index of the first 8-byte word from i that may hold a or b, moving eight bytes
+     * per step; the caller goes on byte by byte from there.
+     */
+    int skipWordsWithout(int i, int end, char a, char b) {
+        long pa = ONES * a;
+        long pb = ONES * b;
+        while (i + 8 <= end) {
+            long word = bytes.getLong(i);
+            if ((hasZeroByte(word ^ pa) | hasZeroByte(word ^ pb)) != 0) break;
+            i += 8;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the first 8-byte word from i that is not all spaces.
+     */
+    int skipSpaceWords(int i, int end) {
+        while (i + 8 <= end && bytes.getLong(i) == SPACES) {
+            i += 8;
+        }
+        return i;
+    }
+
+    private static long hasZeroByte(long word) {
+        return (word - ONES) & ~word & HIGHS;
+    }
+}
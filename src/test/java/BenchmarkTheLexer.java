@@ -0,0 +1,96 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the lexer's fast paths (run skipping) with the char by char scan, on chars
+ * and on UTF-8 bytes, where string bodies and blanks are also skipped a word at a time,
+ * and lexing UTF-8 bytes directly with decoding them first.
+ * Not a unit test; run its main with an optional size in MB (default 16).
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class BenchmarkTheLexer {
+
+	private static final String[] INPUTS = {
+			"src/main/resources/inputMethods.txt",
+			"src/main/resources/inputStatements.txt",
+			"src/main/resources/inputClass.txt"
+	};
+
+	public static void main(String[] args) throws IOException {
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		StringBuilder sample = new StringBuilder();
+		for (String input : INPUTS) {
+			sample.append(Files.readString(new File(input).toPath())).append('\n');
+		}
+		sample.append("int someLongIdentifierName = anotherLongIdentifier + yetAnotherIdentifier;\n");
+		sample.append("string s = \"a longer string literal, with separators; and spaces\";\n");
+		StringBuilder text = new StringBuilder(megabytes << 20);
+		while (text.length() < megabytes << 20) {
+			text.append(sample);
+		}
+		String source = text.toString();
+
+		for (int round = 0; round < 5; round++) {
+			long scalar = time(source, false);
+			long fast = time(source, true);
+			System.out.printf("round %d: scalar %6.1f ms, fast %6.1f ms, %.2fx%n",
+					round, scalar / 1e6, fast / 1e6, (double) scalar / fast);
+		}
+
+		TheLexer scalar = new TheLexer(source);
+		scalar.setFastPaths(false);
+		scalar.run();
+		TheLexer fast = new TheLexer(source);
+		fast.run();
+		TokenBuffer a = scalar.getTokenBuffer();
+		TokenBuffer b = fast.getTokenBuffer();
+		for (int i = 0; i < Math.max(a.size(), b.size()); i++) {
+			if (i >= a.size() || i >= b.size() || a.kind(i) != b.kind(i) || a.start(i) != b.start(i)
+					|| a.length(i) != b.length(i) || a.line(i) != b.line(i)) {
+				throw new IllegalStateException("Fast path differs at token " + i);
+			}
+		}
+		System.out.println(a.size() + " tokens, same with and without fast paths");
+
+		ByteBuffer bytes = ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+		for (int round = 0; round < 5; round++) {
+			long scalarUtf8 = time(bytes, false);
+			long fastUtf8 = time(bytes, true);
+			System.out.printf("round %d: UTF-8 scalar %6.1f ms, fast %6.1f ms, %.2fx%n",
+					round, scalarUtf8 / 1e6, fastUtf8 / 1e6, (double) scalarUtf8 / fastUtf8);
+		}
+
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			new TheLexer(StandardCharsets.UTF_8.decode(bytes.duplicate())).run(ForkJoinPool.commonPool(), 1);
+			long decoded = System.nanoTime() - start;
+			start = System.nanoTime();
+			new TheLexer(bytes).run(ForkJoinPool.commonPool(), 1);
+			long raw = System.nanoTime() - start;
+			System.out.printf("round %d: decode + lex %6.1f ms, lex UTF-8 %6.1f ms, %.2fx%n",
+					round, decoded / 1e6, raw / 1e6, (double) decoded / raw);
+		}
+	}
+
+	private static long time(String source, boolean fastPaths) throws IOException {
+		return time(new TheLexer(source), fastPaths);
+	}
+
+	private static long time(ByteBuffer bytes, boolean fastPaths) throws IOException {
+		return time(new TheLexer(bytes.duplicate()), fastPaths);
+	}
+
+	private static long time(TheLexer lexer, boolean fastPaths) throws IOException {
+		lexer.setFastPaths(fastPaths);
+		long start = System.nanoTime();
+		// A single chunk, so both are timed on one thread
+		lexer.run(ForkJoinPool.commonPool(), 1);
+		return System.nanoTime() - start;
+	}
+}
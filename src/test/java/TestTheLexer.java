@@ -0,0 +1,366 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTheLexer {
+
+	private static final String[] INPUTS = {
+			"src/main/resources/inputOneLineBodies.txt",
+			"src/main/resources/inputStatements.txt",
+			"src/main/resources/inputAssignment.txt",
+			"src/main/resources/inputMethods.txt",
+			"src/main/resources/inputClass.txt"
+	};
+
+	private static String describe(Vector<TheToken> tokens) {
+		StringBuilder sb = new StringBuilder();
+		for (TheToken t : tokens) {
+			sb.append(t.getValue()).append('\t').append(t.getType()).append('\t').append(t.getLine()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testInMemorySourcesMatchFile() throws IOException {
+		for (String input : INPUTS) {
+			File file = new File(input);
+			TheLexer fromFile = new TheLexer(file);
+			fromFile.run();
+
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			TheLexer fromText = new TheLexer(new String(bytes, StandardCharsets.UTF_8));
+			fromText.run();
+			TheLexer fromBytes = new TheLexer(ByteBuffer.wrap(bytes));
+			fromBytes.run();
+
+			assertEquals(describe(fromFile.getTokens()), describe(fromText.getTokens()), input);
+			assertEquals(describe(fromFile.getTokens()), describe(fromBytes.getTokens()), input);
+		}
+	}
+
+	@Test
+	public void testStringLiteralSpansLines() throws IOException {
+		TheLexer lexer = new TheLexer("x = \"one\r\ntwo\";\ny = 1;");
+		lexer.run();
+		Vector<TheToken> tokens = lexer.getTokens();
+
+		assertEquals("\"one\r\ntwo\"", tokens.get(2).getValue());
+		assertEquals("STRING", tokens.get(2).getType());
+		assertEquals(1, tokens.get(2).getLine());
+		assertEquals("y", tokens.get(4).getValue());
+		assertEquals(3, tokens.get(4).getLine());
+		assertEquals(3, lexer.getLineCount());
+		assertEquals(16, lexer.getLineStart(3));
+	}
+
+	@Test
+	public void testStreamMatchesBuffer() throws IOException {
+		for (String input : INPUTS) {
+			TheLexer lexer = new TheLexer(new File(input));
+			lexer.run();
+			Vector<TheToken> expected = lexer.getTokens();
+
+			TokenStream stream = new TheLexer(new File(input)).stream(4);
+			Vector<TheToken> streamed = new Vector<>();
+			while (stream.hasNext()) {
+				TheToken peeked = stream.peek(0);
+				TheToken next = stream.next();
+				assertEquals(peeked.getValue(), next.getValue());
+				streamed.add(next);
+			}
+			assertEquals(describe(expected), describe(streamed), input);
+			assertEquals(4, stream.getWindow());
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (String input : INPUTS) {
+			text.append(Files.readString(new File(input).toPath())).append('\n');
+		}
+		text.append("s = \"a string ; with { separators }\n over  two lines\" ;\n");
+		text.append("c = ' ' ; d = '\\n' ; e = 'x' ; f = '\\' ; g = 'ab c' 0x1F 0b2 1.5e3 ;\n");
+		text.append("u = \"unterminated ... ");
+		String source = text.toString();
+
+		TheLexer sequential = new TheLexer(source);
+		sequential.run();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int chunks : new int[]{2, 7, 64, 1000}) {
+				TheLexer parallel = new TheLexer(source);
+				parallel.run(pool, chunks);
+				assertEquals(describe(sequential.getTokens()), describe(parallel.getTokens()), "chunks=" + chunks);
+				assertEquals(sequential.getLineCount(), parallel.getLineCount());
+				for (int line = 1; line <= sequential.getLineCount(); line++) {
+					assertEquals(sequential.getLineStart(line), parallel.getLineStart(line));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testKeywordsAndTheirPrefixes() throws IOException {
+		TheLexer lexer = new TheLexer("int in integer int1 _int do double Do return returns");
+		lexer.run();
+		assertEquals("int\tKEYWORD\t1\nin\tID\t1\ninteger\tID\t1\nint1\tID\t1\n_int\tID\t1\n"
+						+ "do\tKEYWORD\t1\ndouble\tID\t1\nDo\tID\t1\nreturn\tKEYWORD\t1\nreturns\tID\t1\n",
+				describe(lexer.getTokens()));
+	}
+
+	@Test
+	public void testPrecompiledTableMatchesSpec() throws IOException {
+		try (InputStream in = TheLexer.class.getResourceAsStream(TheLexer.TABLE_RESOURCE)) {
+			assertNotNull(in, TheLexer.TABLE_RESOURCE);
+			assertEquals(TheLexer.buildTable(), DfaTable.read(in), "lexer.dfa is out of date with TheLexer.spec()");
+		}
+		DfaTable full = TheLexer.spec().compile();
+		DfaTable minimal = TheLexer.buildTable();
+		assertTrue(minimal.getStateCount() < full.getStateCount());
+	}
+
+	@Test
+	public void testEditMatchesFullRelex() throws IOException {
+		String text = Files.readString(new File("src/main/resources/inputMethods.txt").toPath());
+		TheLexer lexer = new TheLexer(text);
+		lexer.run();
+		int middle = text.indexOf("float");
+
+		Object[][] edits = {
+				{middle, 0, "x"},
+				{middle, 7, ""},
+				{0, 0, "\"open string\n"},
+				{0, 1, ""},
+				{middle, 0, "'a' '\\n' int y = 0x1F;\n"},
+				{text.length() - 1, 1, " int z"}
+		};
+		for (Object[] e : edits) {
+			int offset = (Integer) e[0];
+			int removed = (Integer) e[1];
+			String inserted = (String) e[2];
+			TokenEdit edit = lexer.edit(offset, removed, inserted);
+			text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+
+			TheLexer full = new TheLexer(text);
+			full.run();
+			assertEquals(describe(full.getTokens()), describe(lexer.getTokens()), edit.toString());
+			assertEquals(full.getLineCount(), lexer.getLineCount());
+			for (int line = 1; line <= full.getLineCount(); line++) {
+				assertEquals(full.getLineStart(line), lexer.getLineStart(line));
+			}
+		}
+		int length = text.length();
+		assertThrows(IndexOutOfBoundsException.class, () -> lexer.edit(length + 1, 0, ""));
+	}
+
+	@Test
+	public void testUtf8BytesMatchDecodedText() throws IOException {
+		String text = "string café = \"naïve € ; 😀\";\nchar c = '\\é'; char d = 'é'; int ñ = 1;\nx = \"end\";";
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		TheLexer chars = new TheLexer(text);
+		chars.run();
+		TheLexer utf8 = new TheLexer(ByteBuffer.wrap(bytes));
+		utf8.run();
+
+		assertEquals(describe(chars.getTokens()), describe(utf8.getTokens()));
+		assertEquals("CHAR", utf8.getTokens().get(8).getType());
+		assertEquals(text.substring(0, text.indexOf("x = ")).getBytes(StandardCharsets.UTF_8).length, utf8.getLineStart(3));
+		TokenBuffer tokens = utf8.getTokenBuffer();
+		assertTrue(tokens.valueEquals(3, "\"naïve € ; 😀\""));
+		assertFalse(tokens.valueEquals(3, "\"naive € ; 😀\""));
+	}
+
+	@Test
+	public void testUtf8EditKeepsTokenBuffer() throws IOException {
+		String text = "int café = 1;\nstring s = \"naïve\";\ncafé = café + 2;";
+		TheLexer utf8 = new TheLexer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+		utf8.run();
+		TokenBuffer tokens = utf8.getTokenBuffer();
+		int cafe = tokens.identifier(1);
+
+		// Char offsets from the first edit on, in the buffer a parser may already hold
+		utf8.edit(text.indexOf("2;"), 1, "3");
+		assertSame(tokens, utf8.getTokenBuffer());
+		assertEquals(cafe, tokens.identifier(1));
+		assertEquals(text.indexOf("\"naïve\""), tokens.start(8));
+		String edited = text.replace("2;", "3;");
+		TheLexer chars = new TheLexer(edited);
+		chars.run();
+		assertEquals(describe(chars.getTokens()), describe(utf8.getTokens()));
+		assertEquals(edited.lastIndexOf("café ="), utf8.getLineStart(3));
+	}
+
+	@Test
+	public void testIdentifiersAreInterned() throws IOException {
+		String text = Files.readString(new File("src/main/resources/inputMethods.txt").toPath())
+				+ "\nint café = café + ñ;";
+		TheLexer sequential = new TheLexer(text);
+		sequential.run();
+		assertInterned(sequential.getTokenBuffer());
+		TheLexer utf8 = new TheLexer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+		utf8.run();
+		assertInterned(utf8.getTokenBuffer());
+		assertInterned(new TheLexer(text).stream(4));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TheLexer parallel = new TheLexer(text);
+			parallel.run(pool, 7);
+			assertInterned(parallel.getTokenBuffer());
+		} finally {
+			pool.shutdown();
+		}
+		sequential.edit(text.indexOf("float"), 0, "café x ");
+		assertInterned(sequential.getTokenBuffer());
+	}
+
+	@Test
+	public void testNamesAddedAfterLexing() throws Exception {
+		TheLexer lexer = new TheLexer("int a = b;");
+		lexer.run();
+		Identifiers names = lexer.getTokenBuffer().identifiers();
+		assertTrue(names.isFrozen());
+		int a = names.find("a");
+		int size = names.size();
+		// From several threads at once, as the analyzers of a parallel parse do
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				tasks.add(pool.submit(() -> {
+					for (int i = 0; i < 100; i++) {
+						assertEquals("late" + i, names.name(names.intern("late" + i)));
+						assertEquals(a, names.intern("a"));
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) task.get();
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(size + 100, names.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("late" + i, names.name(names.find("late" + i)));
+		}
+		assertEquals(-1, names.find("never"));
+	}
+
+	// Each token's id names its text, and tokens with the same text have the same id
+	private static void assertInterned(TokenSource tokens) {
+		Map<String, Integer> ids = new HashMap<>();
+		for (int i = 0; tokens.has(i); i++) {
+			int id = tokens.identifier(i);
+			String value = tokens.value(i);
+			assertEquals(value, tokens.identifiers().name(id));
+			assertEquals(ids.computeIfAbsent(value, v -> id).intValue(), id, value);
+		}
+		assertTrue(ids.containsKey("café"));
+	}
+
+	@Test
+	public void testTerminalIdsAreLexed() throws IOException {
+		String text = Files.readString(new File("src/main/resources/inputStatements.txt").toPath())
+				+ "\nint café = café + ID; string s = \"if ==\"; x = y <= z;";
+		TheLexer sequential = new TheLexer(text);
+		sequential.run();
+		assertTerminals(sequential.getTokenBuffer());
+		assertTerminals(new TheLexer(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8))).stream(4));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TheLexer parallel = new TheLexer(text);
+			parallel.run(pool, 7);
+			assertTerminals(parallel.getTokenBuffer());
+		} finally {
+			pool.shutdown();
+		}
+		sequential.edit(text.indexOf("café"), 0, "while (a >= b) ");
+		assertTerminals(sequential.getTokenBuffer());
+	}
+
+	// Each token's terminal id is the one of its text
+	private static void assertTerminals(TokenSource tokens) {
+		for (int i = 0; tokens.has(i); i++) {
+			assertEquals(ParseTable.terminal(tokens.value(i)), tokens.terminal(i), tokens.value(i));
+		}
+	}
+
+	@Test
+	public void testTokenCacheHitMatchesLexing(@TempDir Path dir) throws IOException {
+		TokenCache cache = new TokenCache(dir);
+		for (int pass = 0; pass < 2; pass++) {
+			for (String input : INPUTS) {
+				TheLexer plain = new TheLexer(new File(input));
+				plain.run();
+				TheLexer cached = new TheLexer(new File(input));
+				cached.setCache(cache);
+				cached.run();
+				assertEquals(describe(plain.getTokens()), describe(cached.getTokens()), input);
+				assertEquals(plain.getLineCount(), cached.getLineCount());
+				for (int line = 1; line <= plain.getLineCount(); line++) {
+					assertEquals(plain.getLineStart(line), cached.getLineStart(line));
+				}
+			}
+		}
+		assertEquals(INPUTS.length, cache.getMisses());
+		assertEquals(INPUTS.length, cache.getHits());
+
+		// Reopened with a small limit, the least recently used entries go
+		long limit = cache.size() / 2;
+		TokenCache small = new TokenCache(dir, limit);
+		assertTrue(small.size() <= limit);
+		assertTrue(small.size() > 0);
+
+		// Entries written for other DFA tables are dropped
+		Files.writeString(dir.resolve("tables"), "0 0");
+		assertEquals(0, new TokenCache(dir).size());
+	}
+
+	@Test
+	public void testTokenCacheKeepsHitEntries(@TempDir Path dir) throws IOException {
+		String[] sources = new String[4];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = "class A { int " + (char) ('a' + i) + " = 1; }\n";
+		}
+		// Entries for sources of one shape all have the same size
+		TokenCache probe = new TokenCache(dir.resolve("probe"));
+		lexCached(sources[0], probe);
+		long entry = probe.size();
+
+		TokenCache cache = new TokenCache(dir.resolve("cache"), 3 * entry);
+		for (int i = 0; i < 3; i++) lexCached(sources[i], cache);
+		lexCached(sources[0], cache);
+		assertEquals(1, cache.getHits());
+		// Over the limit, the entry passed over since its hit goes rather than the oldest
+		lexCached(sources[3], cache);
+		assertEquals(3 * entry, cache.size());
+		lexCached(sources[0], cache);
+		assertEquals(2, cache.getHits());
+		lexCached(sources[1], cache);
+		assertEquals(2, cache.getHits());
+	}
+
+	private static void lexCached(String source, TokenCache cache) throws IOException {
+		TheLexer lexer = new TheLexer(source);
+		lexer.setCache(cache);
+		lexer.run();
+	}
+
+}
@@ -1,9 +1,15 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,4 +73,522 @@ public class TestTheParser {
 		assertDoesNotThrow(() -> parser.run());
 	}
 	
-}
\ No newline at end of file
+	@Test
+	public void testTreePrinterTracesRulesTokensAndVariables() throws IOException {
+		TheLexer lexer = new TheLexer("class A { int x = 1; }");
+		lexer.run();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		parser = new TheParser(lexer.getTokenBuffer());
+		parser.setListener(new TreePrinter(new PrintStream(bytes)));
+		assertEquals(0, parser.run());
+
+		String trace = bytes.toString();
+		assertTrue(trace.startsWith("- RULE_PROGRAM\n  -- Found 'class'\n  -- Identifier: A\n  -- Found '{'\n"), trace);
+		assertTrue(trace.contains("\n  - RULE_VARIABLE\n    - RULE_TYPE\n      -- Type: int\n    -- Identifier: x\n"
+				+ "Added variable: x of type int in scope global with value 0\n    -- =\n"), trace);
+		assertTrue(trace.endsWith("\n  -- Found ';'\n  -- Found '}'\n"), trace);
+	}
+
+	@Test
+	public void testNoListenerTracesNothing() throws IOException {
+		TheLexer lexer = new TheLexer(new File("src/main/resources/inputMethods.txt"));
+		lexer.run();
+		List<String> events = new ArrayList<>();
+		parser = new TheParser(lexer.getTokenBuffer());
+		parser.setListener(new ParseListener() {
+			@Override
+			public void error(String message) {
+				events.add(message);
+			}
+		});
+		int errors = parser.run();
+
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			assertSame(ParseListener.NONE, new TheParser(lexer.getTokenBuffer()).getListener());
+			assertEquals(errors, new TheParser(lexer.getTokenBuffer()).run());
+		} finally {
+			System.setOut(out);
+		}
+		assertTrue(bytes.toString().startsWith("\n=== SYMBOL TABLE ==="), bytes.toString());
+		assertTrue(events.size() >= errors);
+	}
+
+	@Test
+	public void testParseTableMatchesFirstAndFollowSets() {
+		List<String> terminals = new ArrayList<>();
+		for (TokenKind kind : TokenKind.values()) terminals.add(kind.name());
+		for (int rule = 0; rule < ParseTable.ruleCount(); rule++) {
+			terminals.addAll(FirstSets.FIRST_MAP.get(ParseTable.ruleName(rule)));
+			terminals.addAll(FollowSets.FOLLOW_MAP.get(ParseTable.ruleName(rule)));
+		}
+		terminals.add("notATerminal");
+		for (int rule = 0; rule < ParseTable.ruleCount(); rule++) {
+			String name = ParseTable.ruleName(rule);
+			for (String value : terminals) {
+				for (TokenKind kind : new TokenKind[]{TokenKind.ID, TokenKind.OPERATOR, TokenKind.STRING}) {
+					int t = ParseTable.terminal(value);
+					assertEquals(FirstSets.FIRST_MAP.get(name).contains(value) || FirstSets.FIRST_MAP.get(name).contains(kind.name()),
+							ParseTable.inFirst(rule, t, kind.ordinal()), name + " " + value + " " + kind);
+					assertEquals(FollowSets.FOLLOW_MAP.get(name).contains(value) || FollowSets.FOLLOW_MAP.get(name).contains(kind.name()),
+							ParseTable.inFollow(rule, t, kind.ordinal()), name + " " + value + " " + kind);
+				}
+			}
+		}
+		assertEquals(ParseTable.NONE, ParseTable.terminal("notATerminal"));
+		assertTrue(ParseTable.terminalCount() > TokenKind.values().length);
+	}
+
+	@Test
+	public void testExpressionOperatorLevels() throws IOException {
+		String[][] cases = {
+				{"!a < b & -a * (b + 1) / 2 > 3 | !!(a < b)", "[]"},
+				{"a + !b", "[A: error on !]"},
+				{"- - a", "[C: error on -]"},
+				{"a * < b", "[B: error on <]"},
+				{"a + * b | a < b", "[A: error on *]"},
+				{"(a | b", "[RULE_C: expected ')' at Token(value=;, type=DELIMITER)]"}
+		};
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			for (String[] c : cases) {
+				TheLexer lexer = new TheLexer("class A { boolean m(int a, int b) { boolean v = true; v = " + c[0] + "; } }");
+				lexer.run();
+				List<String> errors = new ArrayList<>();
+				parser = new TheParser(lexer.getTokenBuffer());
+				parser.setListener(new ParseListener() {
+					@Override
+					public void error(String message) {
+						errors.add(message);
+					}
+				});
+				parser.run();
+				assertEquals(c[1], errors.toString(), c[0]);
+			}
+		} finally {
+			System.setErr(err);
+		}
+	}
+
+	@Test
+	public void testSyntaxTree() throws IOException {
+		TheLexer lexer = new TheLexer("class A { int m(int a) { int x = a + -a * 2; if (!!(x < 3) | f(a, 1)) x = 1; return x; } }");
+		lexer.run();
+		SyntaxTree tree = new SyntaxTree(4);
+		parser = new TheParser(lexer.getTokenBuffer());
+		parser.setTree(tree);
+		parser.run();
+		assertEquals("PROGRAM class\n  IDENTIFIER A\n"
+				+ "  METHOD int\n    TYPE int\n    IDENTIFIER m\n"
+				+ "    PARAMS int\n      PARAM int\n        TYPE int\n        IDENTIFIER a\n"
+				+ "    BLOCK {\n"
+				+ "      VARIABLE int\n        TYPE int\n        IDENTIFIER x\n"
+				+ "        BINARY +\n          IDENTIFIER a\n"
+				+ "          BINARY *\n            UNARY -\n              IDENTIFIER a\n            LITERAL 2\n"
+				+ "      IF if\n        BINARY |\n"
+				+ "          UNARY !\n            UNARY !\n              BINARY <\n                IDENTIFIER x\n                LITERAL 3\n"
+				+ "          CALL f\n            IDENTIFIER f\n            ARGUMENTS a\n              IDENTIFIER a\n              LITERAL 1\n"
+				+ "        ASSIGNMENT x\n          IDENTIFIER x\n          LITERAL 1\n"
+				+ "      RETURN return\n        IDENTIFIER x\n", tree.toString());
+
+		SyntaxTree.Cursor cursor = tree.cursor();
+		assertEquals(NodeKind.PROGRAM, cursor.kind());
+		assertTrue(cursor.firstChild());
+		assertTrue(cursor.nextSibling());
+		assertEquals(NodeKind.METHOD, cursor.kind());
+		assertFalse(cursor.nextSibling());
+		assertTrue(cursor.firstChild());
+		assertEquals("int", cursor.value());
+		assertTrue(cursor.parent());
+		assertTrue(cursor.parent());
+		assertFalse(cursor.parent());
+		assertEquals(tree.root(), cursor.node());
+		assertEquals(4, tree.childCount(tree.child(tree.root(), 1)));
+
+		// The same arena, reset by the next parse
+		int size = tree.size();
+		lexer = new TheLexer(new File("src/main/resources/inputClass.txt"));
+		lexer.run();
+		parser = new TheParser(lexer.getTokenBuffer());
+		parser.setTree(tree);
+		parser.run();
+		assertTrue(tree.size() < size);
+		int[] nodes = {0};
+		tree.walk(new SyntaxTree.Visitor() {
+			@Override
+			public boolean enter(SyntaxTree t, int node) {
+				nodes[0]++;
+				return true;
+			}
+		});
+		assertEquals(tree.size(), nodes[0]);
+	}
+
+
+	@Test
+	public void testSyntaxTreeOverStream() throws IOException {
+		StringBuilder source = new StringBuilder("class A {\n");
+		for (int i = 0; i < 200; i++) {
+			source.append("int x").append(i).append(" = ").append(i).append(";\n");
+		}
+		source.append("}\n");
+		TokenStream stream = new TheLexer(source.toString()).stream();
+		SyntaxTree tree = new SyntaxTree();
+		parser = new TheParser(stream);
+		parser.setTree(tree);
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			parser.run();
+		} finally {
+			System.setOut(out);
+		}
+		// Tokens that fell out of the window print as their index
+		String text = tree.toString();
+		assertTrue(text.startsWith("PROGRAM #0\n  IDENTIFIER #1\n"), text);
+		assertTrue(text.endsWith("  VARIABLE int\n    TYPE int\n    IDENTIFIER x199\n    LITERAL 199\n"), text);
+		assertNull(tree.value(tree.root()));
+	}
+
+	@Test
+	public void testParallelParseMatchesSequential() throws IOException {
+		StringBuilder source = new StringBuilder("class A {\n");
+		for (int i = 0; i < 40; i++) {
+			// Overloads share a scope, calls go forward and back, and some bodies have errors
+			source.append("int m").append(i % 7).append("(int a").append(i % 2 == 0 ? "" : ", int b").append(") {\n")
+					.append("  int x = a + ").append(i).append(";\n")
+					.append("  if (x < a) { x = m").append((i + 3) % 7).append("(x); }\n")
+					.append(i % 5 == 0 ? "  y = true;\n" : "")
+					.append(i % 11 == 0 ? "  while x ) { }\n" : "")
+					.append("  return x;\n}\n");
+			if (i % 9 == 0) source.append("boolean g").append(i).append(" = true;\n");
+		}
+		source.append("}\n");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (String text : new String[]{source.toString(), source.toString().replace("while x ) {", "while x ) {{")}) {
+				TheLexer lexer = new TheLexer(text);
+				lexer.run();
+				SyntaxTree sequential = new SyntaxTree();
+				SyntaxTree parallel = new SyntaxTree();
+				String expected = capture(lexer.getTokenBuffer(), sequential, null);
+				assertEquals(expected, capture(lexer.getTokenBuffer(), parallel, pool));
+				assertEquals(sequential.toString(), parallel.toString());
+				assertTrue(expected.contains("Semantic error"), expected);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testTwoPhaseResolvesForwardCalls() throws IOException {
+		TheLexer lexer = new TheLexer("class A {\n"
+				+ "int first(int a) { later(a, b); return a; }\n"
+				+ "void later(int a, boolean c) { first(a); }\n"
+				+ "boolean b = true;\n"
+				+ "}\n");
+		lexer.run();
+		String sequential = capture(lexer.getTokenBuffer(), null, null);
+		assertTrue(sequential.contains("Call to undeclared method “later”"), sequential);
+		assertTrue(sequential.contains("Use of undeclared variable “b”"), sequential);
+
+		TheParser parser = new TheParser(lexer.getTokenBuffer());
+		parser.setTwoPhase(true);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		String twoPhase;
+		try {
+			twoPhase = capture(parser, new SyntaxTree(), pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue(twoPhase.contains("Parsed Successfully"), twoPhase);
+		// The same declarations, in the same order
+		assertTrue(twoPhase.contains(sequential.substring(sequential.indexOf("=== SYMBOL TABLE ==="),
+				sequential.indexOf("Errors found"))), twoPhase);
+
+		// run() takes two phases too, however few the methods
+		parser.reset(lexer.getTokenBuffer());
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		parser.setErrorStream(new PrintStream(errors));
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			assertEquals(0, parser.run());
+		} finally {
+			System.setOut(out);
+		}
+		assertEquals(0, parser.semanticAnalizer.getErrorCount());
+		assertEquals("", errors.toString());
+
+		// Sequential parses, with a listener or with StackParser, take two phases as well
+		List<String> events = new ArrayList<>();
+		parser.reset(lexer.getTokenBuffer());
+		parser.setListener(new ParseListener() {
+			@Override
+			public void error(String message) {
+				events.add(message);
+			}
+		});
+		TheParser stack = new StackParser(lexer.getTokenBuffer());
+		stack.setTwoPhase(true);
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			assertEquals(0, parser.run());
+			assertEquals(0, stack.run());
+		} finally {
+			System.setOut(out);
+		}
+		assertEquals(List.of(), events);
+		assertEquals(0, parser.semanticAnalizer.getErrorCount());
+		assertEquals(0, stack.semanticAnalizer.getErrorCount());
+
+		// A stream cannot be read twice
+		TheParser streamed = new TheParser(new TheLexer("class A { }").stream());
+		streamed.setTwoPhase(true);
+		assertThrows(IllegalStateException.class, streamed::run);
+	}
+
+	// Parses tokens into tree, sequentially (pool null) or on pool, and returns what was
+	// printed to System.out and System.err
+	private String capture(TokenBuffer tokens, SyntaxTree tree, ForkJoinPool pool) {
+		return capture(new TheParser(tokens), tree, pool);
+	}
+
+	private String capture(TheParser parser, SyntaxTree tree, ForkJoinPool pool) {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// UTF-8 whatever the locale, for the quotes around names in the messages
+		PrintStream printed = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+		System.setOut(printed);
+		System.setErr(printed);
+		try {
+			parser.setTree(tree);
+			if (pool == null) {
+				// Any listener keeps the parse sequential
+				parser.setListener(new ParseListener() {
+				});
+				parser.run();
+			} else {
+				parser.run(pool);
+			}
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testResetAndParserPool() throws Exception {
+		TheLexer methods = new TheLexer(new File("src/main/resources/inputMethods.txt"));
+		methods.run();
+		TheLexer other = new TheLexer(new File("src/main/resources/inputClass.txt"));
+		other.run();
+		String expected = capture(methods.getTokenBuffer(), null, null);
+
+		// A used parser, reset, parses as a new one does
+		TheParser used = ParserPool.acquire(other.getTokenBuffer());
+		used.setErrorStream(new PrintStream(new ByteArrayOutputStream()));
+		used.setTwoPhase(true);
+		used.run();
+		ParserPool.release(used);
+		parser = ParserPool.acquire(methods.getTokenBuffer());
+		assertSame(used, parser);
+		assertFalse(parser.isTwoPhase());
+		assertEquals(expected, capture(parser, null, null));
+		ParserPool.release(parser);
+		ParserPool.release(parser);
+		assertSame(parser, ParserPool.acquire(methods.getTokenBuffer()));
+		assertNotSame(parser, ParserPool.acquire(methods.getTokenBuffer()));
+
+		// Parsers on different threads share no state
+		List<String> errors = errorsOf(new TheParser(methods.getTokenBuffer()));
+		List<Thread> threads = new ArrayList<>();
+		List<List<String>> results = new Vector<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 5; i++) {
+					TheParser p = ParserPool.acquire(i % 2 == 0 ? methods.getTokenBuffer() : other.getTokenBuffer());
+					List<String> found = errorsOf(p);
+					ParserPool.release(p);
+					if (i % 2 == 0) results.add(found);
+				}
+			}));
+		}
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		System.setErr(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			for (Thread thread : threads) thread.start();
+			for (Thread thread : threads) thread.join();
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+		assertEquals(12, results.size());
+		for (List<String> found : results) {
+			assertEquals(errors, found);
+		}
+	}
+
+	@Test
+	public void testStackParserMatchesTheParser() throws IOException {
+		for (String name : new String[]{"inputAssignment", "inputClass", "inputMethods", "inputOneLineBodies", "inputStatements"}) {
+			TheLexer lexer = new TheLexer(new File("src/main/resources/" + name + ".txt"));
+			lexer.run();
+			SyntaxTree recursive = new SyntaxTree();
+			SyntaxTree iterative = new SyntaxTree();
+			assertEquals(capture(lexer.getTokenBuffer(), recursive, null),
+					capture(new StackParser(lexer.getTokenBuffer()), iterative, null), name);
+			assertEquals(recursive.toString(), iterative.toString(), name);
+			assertEquals(errorsOf(new TheParser(lexer.getTokenBuffer())),
+					errorsOf(new StackParser(lexer.getTokenBuffer())), name);
+		}
+
+		// Nesting far deeper than a thread's stack allows for recursive descent
+		int levels = 100_000;
+		StringBuilder source = new StringBuilder("class A { void m() { int x = ");
+		source.append("(".repeat(levels)).append('1').append(")".repeat(levels)).append("; ");
+		source.append("if (1 < 2) { ".repeat(levels)).append("x = -x; ").append("} ".repeat(levels)).append("} }");
+		TheLexer lexer = new TheLexer(source.toString());
+		lexer.run();
+		StackParser deep = new StackParser(lexer.getTokenBuffer());
+		SyntaxTree tree = new SyntaxTree();
+		deep.setTree(tree);
+		deep.setErrorStream(new PrintStream(new ByteArrayOutputStream()));
+		// Literal operands carry no type, so each condition is reported, and nothing else
+		List<String> errors = errorsOf(deep);
+		assertEquals(levels, errors.size());
+		assertTrue(errors.get(levels - 1).startsWith("'if' condition"), errors.get(levels - 1));
+		assertTrue(deep.getMaxDepth() > 2 * levels);
+		assertEquals(NodeKind.PROGRAM, tree.kind(tree.root()));
+	}
+
+	@Test
+	public void testSemanticScopes() {
+		SemanticAnalizer analyzer = new SemanticAnalizer();
+		List<String> errors = new ArrayList<>();
+		analyzer.setListener(new ParseListener() {
+			@Override
+			public void error(String message) {
+				errors.add(message);
+			}
+		});
+		analyzer.setErrorStream(new PrintStream(new ByteArrayOutputStream()));
+		analyzer.checkVariable("x", "int", "");
+		analyzer.enterScope("m@int");
+		analyzer.checkVariable("y", "float", "");
+		analyzer.checkVariable("y", "boolean", "");
+		int method = analyzer.currentScopeId();
+		analyzer.enterScope(SemanticAnalizer.SCOPE_IF, 7);
+		assertEquals("if@7", analyzer.currentScope());
+		assertEquals(method, analyzer.parentScope(analyzer.currentScopeId()));
+		assertEquals("m@int", analyzer.scopeName(method));
+		analyzer.checkVariable("x", "char", "");
+		analyzer.checkVariable("x", "int", "");
+		assertEquals("char", analyzer.getDeclaredType("x"));
+		assertEquals("float", analyzer.getDeclaredType("y"));
+		analyzer.exitScope();
+		assertEquals("int", analyzer.getDeclaredType("x"));
+		analyzer.exitScope();
+		assertFalse(analyzer.lookupVariable("y"));
+		assertNull(analyzer.getDeclaredType("y"));
+
+		// A scope entered again under the same name sees what it declared before
+		analyzer.enterScope("m@int");
+		assertEquals("float", analyzer.getDeclaredType("y"));
+		analyzer.checkVariable("y", "float", "");
+		analyzer.exitScope();
+		analyzer.exitScope();
+		assertEquals("global", analyzer.currentScope());
+		assertEquals(List.of(
+				"Variable 'x' already exists in parent scope 'global'. Cannot redeclare in nested scope 'if@7'",
+				"Variable 'y' already exists in scope 'm@int'"), errors);
+	}
+
+	@Test
+	public void testTypeCube() {
+		assertEquals(SemanticAnalizer.TYPE_STRING, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_PLUS, SemanticAnalizer.TYPE_CHAR, SemanticAnalizer.TYPE_STRING));
+		assertEquals(SemanticAnalizer.TYPE_FLOAT, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_DIV, SemanticAnalizer.TYPE_INT, SemanticAnalizer.TYPE_HEXADECIMAL));
+		assertEquals(SemanticAnalizer.TYPE_ERROR, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_MOD, SemanticAnalizer.TYPE_FLOAT, SemanticAnalizer.TYPE_INT));
+		assertEquals(SemanticAnalizer.TYPE_BINARY, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_ASSIGN, SemanticAnalizer.TYPE_BINARY, SemanticAnalizer.TYPE_OCTAL));
+		assertEquals(SemanticAnalizer.TYPE_ERROR, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_ASSIGN, SemanticAnalizer.TYPE_BINARY, SemanticAnalizer.TYPE_FLOAT));
+		assertEquals(SemanticAnalizer.TYPE_BOOLEAN, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_NOTEQUAL, SemanticAnalizer.TYPE_CHAR, SemanticAnalizer.TYPE_CHAR));
+		assertEquals(SemanticAnalizer.TYPE_ERROR, SemanticAnalizer.resultType(
+				SemanticAnalizer.OP_LESS, SemanticAnalizer.TYPE_CHAR, SemanticAnalizer.TYPE_CHAR));
+		assertEquals(SemanticAnalizer.OP_OR, SemanticAnalizer.operatorIndexOf("||"));
+
+		// (a < b) && !c, with a an int, b a float and c a boolean
+		SemanticAnalizer analyzer = new SemanticAnalizer();
+		analyzer.pushExpressionType("int");
+		analyzer.pushExpressionType("float");
+		analyzer.reduceExpressionType(SemanticAnalizer.OP_LESS);
+		analyzer.pushExpressionType("boolean");
+		analyzer.reduceExpressionType(SemanticAnalizer.OP_NOT);
+		assertEquals(SemanticAnalizer.TYPE_BOOLEAN, analyzer.reduceExpressionType(SemanticAnalizer.OP_AND));
+		assertEquals(1, analyzer.expressionStackSize());
+		assertEquals("boolean", analyzer.getLastExpressionType());
+
+		// A type that is none of the language's is given back as it was pushed
+		analyzer.pushExpressionType("Integer");
+		analyzer.pushExpressionType("int");
+		assertEquals(SemanticAnalizer.TYPE_ERROR, analyzer.reduceExpressionType(SemanticAnalizer.OP_PLUS));
+		assertEquals("ERROR", analyzer.getLastExpressionType());
+		analyzer.pushExpressionType("Integer");
+		assertEquals("Integer", analyzer.getLastExpressionType());
+		assertEquals("int", analyzer.getLastExpressionType());
+	}
+
+	@Test
+	public void testOverloadResolution() throws IOException {
+		TheLexer lexer = new TheLexer("class A {\n"
+				+ "int f(int a) { return a; }\n"
+				+ "boolean f(int a, boolean b) { return b; }\n"
+				+ "string f(boolean b, int a) { string s = \"t\"; return s; }\n"
+				+ "void g() { int x = 0; boolean y = true; f(x); f(x, y); f(y, x); f(y, y); f(x, x, x); }\n"
+				+ "}\n");
+		lexer.run();
+		TheParser parser = new TheParser(lexer.getTokenBuffer());
+		parser.setErrorStream(new PrintStream(new ByteArrayOutputStream()));
+		List<String> errors = errorsOf(parser);
+		assertEquals(2, errors.size(), errors.toString());
+		// Each f with two parameters has one of the types of f(y, y): the first one is taken
+		assertTrue(errors.get(0).startsWith("Argument 1 of “f” expects type “int” but found “boolean”"), errors.get(0));
+		// No f has three parameters: the first one declared is
+		assertTrue(errors.get(1).startsWith("Method “f” expects 1 arguments but was called with 3"), errors.get(1));
+
+		SemanticAnalizer analyzer = parser.semanticAnalizer;
+		int f = lexer.getTokenBuffer().identifiers().find("f");
+		int[] intBoolean = {SemanticAnalizer.TYPE_INT, SemanticAnalizer.TYPE_BOOLEAN};
+		int[] booleanInt = {SemanticAnalizer.TYPE_BOOLEAN, SemanticAnalizer.TYPE_INT};
+		assertEquals("boolean", analyzer.resolveMethod(f, intBoolean).getType());
+		assertEquals("string", analyzer.resolveMethod(f, booleanInt).getType());
+		assertEquals("int", analyzer.resolveMethod(f, new int[]{SemanticAnalizer.TYPE_FLOAT}).getType());
+		assertSame(analyzer.resolveMethod(f, booleanInt), analyzer.resolveMethod(f, booleanInt.clone()));
+	}
+
+	// Runs p and returns the errors it reported
+	private List<String> errorsOf(TheParser p) {
+		List<String> errors = new ArrayList<>();
+		p.setListener(new ParseListener() {
+			@Override
+			public void error(String message) {
+				errors.add(message);
+			}
+		});
+		p.run();
+		return errors;
+	}
+}